@@ -6,6 +6,10 @@ package biz.smk.popularmovies;
 
 import android.content.Context;
 
+import com.squareup.picasso.Picasso;
+
+import biz.smk.popularmovies.utilities.PosterImagePipeline;
+
 /**
  * Application class - useful to access the application context from anywhere.
  */
@@ -25,6 +29,31 @@ public class Application extends android.app.Application {
         sInstance = this;
     }
 
+    /**
+     * Sets up the Picasso singleton so that it loads images through the poster image pipeline
+     * (which downloads images with the shared image client).
+     */
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        Picasso.setSingletonInstance(PosterImagePipeline.get(this).buildPicasso(this));
+    }
+
+    /**
+     * Logs the hit ratios of the poster image pipeline when the app goes to the background.
+     *
+     * @param level {@inheritDoc}
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+
+        if (level == TRIM_MEMORY_UI_HIDDEN) {
+            PosterImagePipeline.get(this).logHitRatios();
+        }
+    }
+
     /**
      * Returns the application context.
      *
@@ -48,6 +48,7 @@ public class MainActivity extends AppCompatActivity {
     private Parcelable mLayoutManagerState;
 
     private PosterGridAdapter mPosterGridAdapter;
+    private PosterGridPrefetcher mPosterGridPrefetcher;
     private boolean mFavoriteMoviesChanged = false;
 
     @BindView(R.id.rv_main_poster_grid) RecyclerView mPosterGridView;
@@ -84,6 +85,10 @@ public class MainActivity extends AppCompatActivity {
         mPosterGridAdapter = new PosterGridAdapter();
         mPosterGridView.setAdapter(mPosterGridAdapter);
 
+        // Prefetch movie listing pages and posters ahead of the scroll position.
+        mPosterGridPrefetcher = new PosterGridPrefetcher();
+        mPosterGridView.addOnScrollListener(mPosterGridPrefetcher);
+
         // Add item decoration to poster grid.
         mPosterGridView.addItemDecoration(new PosterGridItemDecoration(context));
 
@@ -98,11 +103,12 @@ public class MainActivity extends AppCompatActivity {
     }
 
     /**
-     * Unregisters from the EventBus.
+     * Unregisters from the EventBus and cancels pending prefetch requests.
      */
     @Override
     protected void onDestroy() {
         EventBus.getDefault().unregister(this);
+        mPosterGridPrefetcher.setMovieListing(null);
         super.onDestroy();
     }
 
@@ -247,6 +253,7 @@ public class MainActivity extends AppCompatActivity {
 
         invalidateOptionsMenu();
         mPosterGridAdapter.setMovieListingType(mMovieListingType);
+        mPosterGridPrefetcher.setMovieListing(MovieListing.getListing(mMovieListingType));
 
         SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(this);
         preferences.edit().putString(PREFS_FIELD_SELECTED_MOVIE_LISTING, type.toString()).apply();
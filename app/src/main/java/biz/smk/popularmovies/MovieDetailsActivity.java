@@ -32,17 +32,16 @@ import android.widget.Toast;
 import java.lang.ref.WeakReference;
 import java.util.Date;
 
+import biz.smk.popularmovies.data.MovieExtras;
 import biz.smk.popularmovies.data.MovieListing;
 import biz.smk.popularmovies.data.MovieListingMovieDetailsStore;
 import biz.smk.popularmovies.favoritemovies.FavoriteMoviesContract;
 import biz.smk.popularmovies.favoritemovies.FavoriteMoviesHelper;
-import biz.smk.popularmovies.tmdbapi.TmdbApiClient;
-import biz.smk.popularmovies.tmdbapi.TmdbApiClientFactory;
-import biz.smk.popularmovies.tmdbapi.responseobjects.MovieListingMovieDetails;
 import biz.smk.popularmovies.tmdbapi.responseobjects.MovieReviewDetails;
 import biz.smk.popularmovies.tmdbapi.responseobjects.MovieReviews;
 import biz.smk.popularmovies.tmdbapi.responseobjects.MovieVideoDetails;
 import biz.smk.popularmovies.tmdbapi.responseobjects.MovieVideos;
+import biz.smk.popularmovies.tmdbapi.responseobjects.ReadableMovieListingMovieDetails;
 import biz.smk.popularmovies.utilities.PosterLoader;
 import biz.smk.popularmovies.utilities.SingleLoader;
 import biz.smk.popularmovies.utilities.StringUtils;
@@ -50,6 +49,9 @@ import butterknife.BindView;
 import butterknife.ButterKnife;
 import butterknife.OnClick;
 import rx.Single;
+import rx.Subscription;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.functions.Action1;
 
 /**
  * Movie details activity.
@@ -65,10 +67,12 @@ public class MovieDetailsActivity extends AppCompatActivity {
     private long mMovieId;
     private MovieListing.Type mFromListingType;
     private int mListingPosition;
-    private MovieListingMovieDetails mMovieDetails;
+    private ReadableMovieListingMovieDetails mMovieDetails;
+    private Subscription mMovieDetailsSubscription;
     private String mTitle;
     private String mPosterPath;
     private boolean mIsFavoriteMovie = false;
+    private boolean mIsResumed = false;
 
     Runnable mPosterSizeRunnable;
     PosterLoader mPosterLoader;
@@ -126,17 +130,61 @@ public class MovieDetailsActivity extends AppCompatActivity {
             }
         }
 
-        // Get movie details from details store
-        try {
-            mMovieDetails = MovieListingMovieDetailsStore.getMovieDetails(mMovieId);
-        } catch (IllegalArgumentException e) {
-            Log.e(TAG, "Failed to get details for movie ID " + mMovieId + ": " + e.toString());
-            String msg = getString(R.string.activity_movie_details_load_details_failure);
-            Toast.makeText(this, msg, Toast.LENGTH_LONG).show();
-            onBackPressed();
-            return;
+        // Get movie details from details store (or from the API if they are not in the store)
+        ReadableMovieListingMovieDetails movieDetails =
+                MovieListingMovieDetailsStore.peekMovieDetails(mMovieId);
+        if (movieDetails != null) {
+            showMovieDetails(movieDetails);
+        } else {
+            loadMovieDetails();
         }
 
+        // Load video list
+        loadVideoList(false);
+
+        // Load review list
+        loadReviewList(false);
+
+        // Load favorite movie status
+        loadFavoriteMovieStatus(false);
+    }
+
+    /**
+     * Loads the movie details asynchronously (they are not in the details store, e.g. after process
+     * death) and shows them. If loading fails, a message is shown and the activity is closed.
+     */
+    private void loadMovieDetails() {
+        mMovieDetailsSubscription = MovieListingMovieDetailsStore.getMovieDetailsAsync(mMovieId)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<ReadableMovieListingMovieDetails>() {
+                    @Override
+                    public void call(ReadableMovieListingMovieDetails movieDetails) {
+                        showMovieDetails(movieDetails);
+
+                        // When paused, the poster is loaded in onResume.
+                        if (mPosterPath != null && mIsResumed) loadPoster();
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        Log.e(TAG, "Failed to get details for movie ID " + mMovieId + ": " +
+                                throwable.toString());
+                        String msg =
+                                getString(R.string.activity_movie_details_load_details_failure);
+                        Toast.makeText(MovieDetailsActivity.this, msg, Toast.LENGTH_LONG).show();
+                        onBackPressed();
+                    }
+                });
+    }
+
+    /**
+     * Displays the given movie details.
+     *
+     * @param movieDetails The movie details.
+     */
+    private void showMovieDetails(ReadableMovieListingMovieDetails movieDetails) {
+        mMovieDetails = movieDetails;
+
         // Display title (if available)
         mTitle = mMovieDetails.getTitle();
         if (mTitle == null) {
@@ -171,8 +219,8 @@ public class MovieDetailsActivity extends AppCompatActivity {
         }
 
         // Display rating (if available)
-        double rating = mMovieDetails.getVoteAverage();
-        if (rating == -1) {
+        Double rating = mMovieDetails.getVoteAverage();
+        if (rating == null || rating == -1) {
             mRatingView.setVisibility(View.GONE);
         } else {
             // Double is formatted as string so only as many digits as necessary are shown.
@@ -204,15 +252,15 @@ public class MovieDetailsActivity extends AppCompatActivity {
         if (overview != null) {
             mOverviewView.setText(overview);
         }
+    }
 
-        // Load video list
-        loadVideoList(false);
-
-        // Load review list
-        loadReviewList(false);
-
-        // Load favorite movie status
-        loadFavoriteMovieStatus(false);
+    /**
+     * Cancels loading the movie details.
+     */
+    @Override
+    protected void onDestroy() {
+        if (mMovieDetailsSubscription != null) mMovieDetailsSubscription.unsubscribe();
+        super.onDestroy();
     }
 
     /**
@@ -221,6 +269,7 @@ public class MovieDetailsActivity extends AppCompatActivity {
     @Override
     protected void onResume() {
         super.onResume();
+        mIsResumed = true;
 
         if (mPosterPath != null && mPosterView.getDrawable() == null) {
             loadPoster();
@@ -232,6 +281,8 @@ public class MovieDetailsActivity extends AppCompatActivity {
      */
     @Override
     protected void onPause() {
+        mIsResumed = false;
+
         // Cancel all pending requests
         if (mPosterSizeRunnable != null) mPosterView.removeCallbacks(mPosterSizeRunnable);
         if (mPosterLoader != null) mPosterLoader.cancel();
@@ -252,7 +303,8 @@ public class MovieDetailsActivity extends AppCompatActivity {
 
     /**
      * Entrypoint for poster loading. Posts a new runnable to the poster view to get its
-     * dimensions. Then triggers the download of the movie poster in the appropriate size.
+     * dimensions. Then triggers the download of the movie poster in the appropriate size (the
+     * poster view is shown as soon as PosterLoader has loaded a preview of the poster).
      */
     private void loadPoster() {
         setPosterPendingView();
@@ -515,7 +567,7 @@ public class MovieDetailsActivity extends AppCompatActivity {
 
         if (mIsFavoriteMovie) {
             FavoriteMoviesHelper.removeFavoriteMovie(mMovieId, handler);
-        } else {
+        } else if (mMovieDetails != null) {
             FavoriteMoviesHelper.addFavoriteMovie(mMovieDetails, handler);
         }
     }
@@ -568,8 +620,7 @@ public class MovieDetailsActivity extends AppCompatActivity {
 
         @Override
         public Loader<SingleLoader.Result<MovieVideos>> onCreateLoader(int id, Bundle args) {
-            TmdbApiClient apiClient = TmdbApiClientFactory.createApiClient();
-            Single<MovieVideos> request = apiClient.getMovieVideos(mMovieId);
+            Single<MovieVideos> request = MovieExtras.getVideos(mMovieId);
 
             return new SingleLoader<>(MovieDetailsActivity.this, request);
         }
@@ -598,8 +649,7 @@ public class MovieDetailsActivity extends AppCompatActivity {
 
         @Override
         public Loader<SingleLoader.Result<MovieReviews>> onCreateLoader(int id, Bundle args) {
-            TmdbApiClient apiClient = TmdbApiClientFactory.createApiClient();
-            Single<MovieReviews> request = apiClient.getMovieReviews(mMovieId);
+            Single<MovieReviews> request = MovieExtras.getReviews(mMovieId);
 
             return new SingleLoader<>(MovieDetailsActivity.this, request);
         }
@@ -6,13 +6,20 @@ package biz.smk.popularmovies;
 
 import android.support.v7.widget.RecyclerView;
 import android.util.Log;
+import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
 import org.greenrobot.eventbus.EventBus;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import biz.smk.popularmovies.data.MovieListing;
+import biz.smk.popularmovies.tmdbapi.TmdbApiConfiguration;
+import biz.smk.popularmovies.tmdbapi.responseobjects.ReadableMovieListingMovieDetails;
+import rx.Single;
 import rx.Subscription;
 import rx.android.schedulers.AndroidSchedulers;
 import rx.functions.Action1;
@@ -21,16 +28,26 @@ import rx.functions.Action1;
  * RecyclerView adapter for the movie posters grid. The adapter is "ready" as soon as it received
  * the total count of the assigned movie listing. The item data (movieId and movie poster) is loaded
  * and cached on the fly when scrolling through the items.
+ *
+ * Movie IDs are requested in windows of MOVIE_ID_WINDOW_SIZE positions (aligned to the listing
+ * pages): the first bound view holder of a window triggers one request for the IDs of the whole
+ * window, and the result is pushed to all view holders that are bound to positions in the window.
  */
 class PosterGridAdapter extends RecyclerView.Adapter<PosterGridViewHolder> {
 
     private static final String TAG = "PosterGridAdapter";
 
+    private static final int MOVIE_ID_WINDOW_SIZE =
+            TmdbApiConfiguration.NUM_LISTING_ENTRIES_PER_PAGE;
+
     private MovieListing mMovieListing;
     private Subscription mTotalCountSubscription;
     private int mTotalCount;
     private int mViewHolderCount = 0;
 
+    private SparseArray<MovieIdWindow> mMovieIdWindows = new SparseArray<>();
+    private Map<PosterGridViewHolder, MovieIdWindow> mViewHolderWindows = new HashMap<>();
+
     /**
      * Sets the type of the movie listing.
      *
@@ -39,6 +56,7 @@ class PosterGridAdapter extends RecyclerView.Adapter<PosterGridViewHolder> {
     void setMovieListingType(MovieListing.Type type) {
         mMovieListing = MovieListing.getListing(type);
         mTotalCount = 0;
+        releaseMovieIdWindows();
 
         notifyDataSetChanged();
         getTotalCount();
@@ -46,7 +64,8 @@ class PosterGridAdapter extends RecyclerView.Adapter<PosterGridViewHolder> {
 
     /**
      * Requests the total count from the movie listing. This will emit sticky status events
-     * (pending, ready, error).
+     * (pending, ready, error). The count is the item count of the adapter; MovieListing limits it
+     * to the pages the API serves, so the grid never binds positions that can not be loaded.
      */
     private void getTotalCount() {
         if (mTotalCountSubscription != null) {
@@ -66,6 +85,7 @@ class PosterGridAdapter extends RecyclerView.Adapter<PosterGridViewHolder> {
 
                         if (totalCount != mTotalCount) {
                             mTotalCount = totalCount;
+                            releaseMovieIdWindows();
                             notifyDataSetChanged();
                         }
 
@@ -101,20 +121,186 @@ class PosterGridAdapter extends RecyclerView.Adapter<PosterGridViewHolder> {
 
     @Override
     public void onBindViewHolder(PosterGridViewHolder holder, int position) {
-        holder.bind(mMovieListing, position);
+        holder.bind(this, position);
+        requestMovieId(holder, position);
     }
 
     @Override
     public void onViewRecycled(PosterGridViewHolder holder) {
+        releaseMovieId(holder);
         holder.unbind();
         super.onViewRecycled(holder);
     }
 
+    /**
+     * Requests the movie ID for the given position for the given view holder. The ID is delivered
+     * to the view holder with setMovieId() (or an error with setMovieIdError()) - immediately if
+     * the listing page or the ID window of the position has already been loaded, otherwise when the
+     * ID window has been loaded.
+     *
+     * @param holder The view holder that is bound to the position.
+     * @param position The position.
+     */
+    void requestMovieId(final PosterGridViewHolder holder, int position) {
+        releaseMovieId(holder);
+
+        // Fast path: the page of the position is resident, no need to wait for a window.
+        long movieId = mMovieListing.peekMovieId(position);
+        if (movieId != -1) {
+            holder.setMovieId(movieId);
+            return;
+        }
+
+        final int windowNr = position / MOVIE_ID_WINDOW_SIZE;
+        MovieIdWindow window = mMovieIdWindows.get(windowNr);
+
+        if (window == null) {
+            int from = windowNr * MOVIE_ID_WINDOW_SIZE;
+            int to = Math.min(from + MOVIE_ID_WINDOW_SIZE, mTotalCount);
+            window = new MovieIdWindow(from);
+            mMovieIdWindows.put(windowNr, window);
+            loadMovieIdWindow(windowNr, window, to);
+        }
+
+        mViewHolderWindows.put(holder, window);
+        window.viewHolderPositions.put(holder, position);
+
+        if (window.movieIds != null) {
+            holder.setMovieId(window.getMovieId(position));
+        }
+    }
+
+    /**
+     * Subscribes to the movie IDs of the given window and pushes them to the view holders of the
+     * window when they arrive.
+     *
+     * @param windowNr The number of the window.
+     * @param window The window.
+     * @param to Last position of the window (exclusive).
+     */
+    private void loadMovieIdWindow(final int windowNr, final MovieIdWindow window, int to) {
+        window.subscription = mMovieListing.getMovieIds(window.from, to)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<long[]>() {
+                    @Override
+                    public void call(long[] movieIds) {
+                        window.movieIds = movieIds;
+
+                        for (Map.Entry<PosterGridViewHolder, Integer> entry :
+                                window.viewHolderPositions.entrySet()) {
+                            entry.getKey().setMovieId(window.getMovieId(entry.getValue()));
+                        }
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        // Drop the window, so that a retry requests the IDs again.
+                        if (mMovieIdWindows.get(windowNr) == window) {
+                            mMovieIdWindows.remove(windowNr);
+                        }
+
+                        for (PosterGridViewHolder holder : window.viewHolderPositions.keySet()) {
+                            mViewHolderWindows.remove(holder);
+                            holder.setMovieIdError(throwable);
+                        }
+                        window.viewHolderPositions.clear();
+                    }
+                });
+    }
+
+    /**
+     * Returns a Single that resolves to the movie details of the movie with the given ID at the
+     * given position (see MovieListing.getMovieDetails()).
+     *
+     * @param position The position.
+     * @param movieId The ID of the movie at the position.
+     * @return Single that resolves to the movie details.
+     */
+    Single<ReadableMovieListingMovieDetails> getMovieDetails(int position, long movieId) {
+        return mMovieListing.getMovieDetails(position, movieId);
+    }
+
+    /**
+     * Detaches the given view holder from its movie ID window. A window without view holders is
+     * dropped (and its pending request cancelled).
+     *
+     * @param holder The view holder.
+     */
+    private void releaseMovieId(PosterGridViewHolder holder) {
+        MovieIdWindow window = mViewHolderWindows.remove(holder);
+        if (window == null) return;
+
+        window.viewHolderPositions.remove(holder);
+
+        if (window.viewHolderPositions.isEmpty()) {
+            window.subscription.unsubscribe();
+
+            int windowNr = window.from / MOVIE_ID_WINDOW_SIZE;
+            if (mMovieIdWindows.get(windowNr) == window) {
+                mMovieIdWindows.remove(windowNr);
+            }
+        }
+    }
+
+    /**
+     * Cancels and drops all movie ID windows (e.g. when the listing changes). The view holders are
+     * bound again afterwards, which requests new windows.
+     */
+    private void releaseMovieIdWindows() {
+        for (int i = 0; i < mMovieIdWindows.size(); i++) {
+            mMovieIdWindows.valueAt(i).subscription.unsubscribe();
+        }
+        mMovieIdWindows.clear();
+        mViewHolderWindows.clear();
+    }
+
     @Override
     public int getItemCount() {
         return mTotalCount;
     }
 
+    /**
+     * A range of positions whose movie IDs are requested together.
+     */
+    private static class MovieIdWindow {
+
+        /**
+         * The first position of the window.
+         */
+        final int from;
+
+        /**
+         * The view holders that are bound to positions in this window, with their positions.
+         */
+        final Map<PosterGridViewHolder, Integer> viewHolderPositions = new HashMap<>();
+
+        /**
+         * The subscription to the movie IDs.
+         */
+        Subscription subscription;
+
+        /**
+         * The movie IDs of the window (null until they have been loaded).
+         */
+        long[] movieIds;
+
+        MovieIdWindow(int from) {
+            this.from = from;
+        }
+
+        /**
+         * Returns the movie ID for the given position (the movie IDs must have been loaded).
+         *
+         * @param position The position.
+         * @return The movie ID or -1 if the position is not covered by the window.
+         */
+        long getMovieId(int position) {
+            int index = position - from;
+            return index < movieIds.length ? movieIds[index] : -1;
+        }
+
+    }
+
     /**
      * Emitted when the adapter status changes.
      */
@@ -48,4 +48,14 @@ class PosterGridLayoutManager extends GridLayoutManager {
             setSpanCount(spanCount);
         }
     }
+
+    /**
+     * Returns the width of the grid columns (including the item spacing, so the poster views are
+     * slightly narrower).
+     *
+     * @return The column width in pixels, or 0 if the view has not been laid out yet.
+     */
+    int getColumnWidth() {
+        return (getWidth() - getPaddingLeft() - getPaddingRight()) / getSpanCount();
+    }
 }
@@ -0,0 +1,166 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies;
+
+import android.os.SystemClock;
+import android.support.v7.widget.RecyclerView;
+
+import biz.smk.popularmovies.data.MovieListing;
+import biz.smk.popularmovies.data.MovieListingMovieDetailsStore;
+import biz.smk.popularmovies.utilities.PosterPrefetcher;
+
+/**
+ * Scroll listener for the poster grid that prefetches movie listing pages ahead of the scroll
+ * position. The number of pages to prefetch depends on the scroll velocity (slow scrolling only
+ * needs the next page, a fling needs more).
+ *
+ * The posters of the rows ahead of the visible items are prefetched into the image cache as well
+ * (at the width of the grid columns), as far as their movie IDs and details are already loaded.
+ *
+ * When the scroll direction is reversed or the movie listing changes, the pending prefetch
+ * requests are cancelled.
+ */
+class PosterGridPrefetcher extends RecyclerView.OnScrollListener {
+
+    /**
+     * Minimum and maximum number of pages to prefetch ahead of the visible items.
+     */
+    private static final int MIN_PAGES_AHEAD = 1;
+    private static final int MAX_PAGES_AHEAD = 4;
+
+    /**
+     * Minimum and maximum number of poster rows to prefetch ahead of the visible items.
+     */
+    private static final int MIN_POSTER_ROWS_AHEAD = 2;
+    private static final int MAX_POSTER_ROWS_AHEAD = 6;
+
+    /**
+     * Weight of the latest velocity sample in the smoothed velocity (exponential moving average).
+     */
+    private static final float VELOCITY_SMOOTHING = 0.3f;
+
+    private final PosterPrefetcher mPosterPrefetcher;
+
+    private MovieListing mMovieListing;
+
+    private int mDirection = 0;
+    private long mLastScrollTime = 0;
+    private float mVelocity = 0; // screens per second
+
+    /**
+     * Initializes a new prefetcher.
+     */
+    PosterGridPrefetcher() {
+        mPosterPrefetcher = new PosterPrefetcher();
+    }
+
+    /**
+     * Sets the movie listing for which pages are prefetched. Pending prefetch requests of the
+     * previous movie listing are cancelled.
+     *
+     * @param movieListing The movie listing that is shown in the poster grid.
+     */
+    void setMovieListing(MovieListing movieListing) {
+        if (mMovieListing != null) {
+            mMovieListing.cancelPrefetching();
+        }
+        mPosterPrefetcher.cancel();
+
+        mMovieListing = movieListing;
+        mDirection = 0;
+        mVelocity = 0;
+    }
+
+    /**
+     * Updates the scroll direction and velocity and prefetches pages and posters ahead of the
+     * visible items.
+     *
+     * @param recyclerView {@inheritDoc}
+     * @param dx {@inheritDoc}
+     * @param dy {@inheritDoc}
+     */
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        if (dy == 0 || mMovieListing == null || recyclerView.getHeight() == 0) return;
+
+        long now = SystemClock.uptimeMillis();
+        int direction = dy > 0 ? 1 : -1;
+
+        if (direction != mDirection) {
+            mMovieListing.cancelPrefetching();
+            mPosterPrefetcher.cancel();
+            mDirection = direction;
+            mVelocity = 0;
+        } else if (now > mLastScrollTime) {
+            float screens = Math.abs(dy) / (float) recyclerView.getHeight();
+            float velocity = screens * 1000 / (now - mLastScrollTime);
+            mVelocity += VELOCITY_SMOOTHING * (velocity - mVelocity);
+        }
+
+        mLastScrollTime = now;
+
+        PosterGridLayoutManager layoutManager =
+                (PosterGridLayoutManager) recyclerView.getLayoutManager();
+        int edgePosition = direction > 0 ? layoutManager.findLastVisibleItemPosition()
+                : layoutManager.findFirstVisibleItemPosition();
+        if (edgePosition == RecyclerView.NO_POSITION) return;
+
+        mMovieListing.prefetchPages(edgePosition, direction, getPagesAhead());
+        prefetchPosters(layoutManager, edgePosition, direction);
+    }
+
+    /**
+     * Prefetches the posters of the rows ahead of the given edge position. Positions whose movie
+     * IDs or details have not been loaded yet are skipped (they are covered by later scroll
+     * events, once the prefetched pages have arrived).
+     *
+     * @param layoutManager The layout manager of the poster grid.
+     * @param edgePosition The last (or first) visible position.
+     * @param direction 1 to prefetch the following posters, -1 to prefetch the preceding ones.
+     */
+    private void prefetchPosters(PosterGridLayoutManager layoutManager, int edgePosition,
+                                 int direction) {
+        int columnWidth = layoutManager.getColumnWidth();
+        if (columnWidth <= 0) return;
+
+        mPosterPrefetcher.setPosterWidth(columnWidth);
+
+        int posterCount = layoutManager.getSpanCount() * getPosterRowsAhead();
+        int itemCount = layoutManager.getItemCount();
+
+        for (int i = 1; i <= posterCount; i++) {
+            int position = edgePosition + i * direction;
+            if (position < 0 || position >= itemCount) break;
+
+            long movieId = mMovieListing.peekMovieId(position);
+            if (movieId == -1) continue;
+
+            mPosterPrefetcher.prefetch(MovieListingMovieDetailsStore.peekPosterPath(movieId));
+        }
+    }
+
+    /**
+     * Returns the number of pages to prefetch for the current scroll velocity: one page plus one
+     * page per screen height scrolled per second.
+     *
+     * @return The number of pages to prefetch.
+     */
+    private int getPagesAhead() {
+        int pagesAhead = MIN_PAGES_AHEAD + Math.round(mVelocity);
+        return Math.max(MIN_PAGES_AHEAD, Math.min(MAX_PAGES_AHEAD, pagesAhead));
+    }
+
+    /**
+     * Returns the number of poster rows to prefetch for the current scroll velocity: two rows
+     * plus two rows per screen height scrolled per second.
+     *
+     * @return The number of poster rows to prefetch.
+     */
+    private int getPosterRowsAhead() {
+        int rowsAhead = MIN_POSTER_ROWS_AHEAD + Math.round(2 * mVelocity);
+        return Math.max(MIN_POSTER_ROWS_AHEAD, Math.min(MAX_POSTER_ROWS_AHEAD, rowsAhead));
+    }
+
+}
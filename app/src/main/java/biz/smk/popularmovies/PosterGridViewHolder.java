@@ -5,6 +5,7 @@
 package biz.smk.popularmovies;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.support.v4.content.ContextCompat;
 import android.support.v7.widget.RecyclerView;
 import android.text.Html;
@@ -23,9 +24,8 @@ import org.greenrobot.eventbus.ThreadMode;
 import java.util.Timer;
 import java.util.TimerTask;
 
-import biz.smk.popularmovies.data.MovieListing;
 import biz.smk.popularmovies.data.MovieListingMovieDetailsStore;
-import biz.smk.popularmovies.tmdbapi.responseobjects.MovieListingMovieDetails;
+import biz.smk.popularmovies.tmdbapi.responseobjects.ReadableMovieListingMovieDetails;
 import biz.smk.popularmovies.utilities.PosterLoader;
 import butterknife.BindString;
 import butterknife.BindView;
@@ -36,9 +36,9 @@ import rx.android.schedulers.AndroidSchedulers;
 import rx.functions.Action1;
 
 /**
- * View holder for the poster grid adapter / RecyclerView. The view holder is responsible for
- * requesting the movie ID that belongs to its position in the listing (= in the adapter). It also
- * triggers downloading the corresponding movie poster in the appropriate size.
+ * View holder for the poster grid adapter / RecyclerView. The view holder receives the movie ID
+ * that belongs to its position in the listing (= in the adapter) from the adapter and triggers
+ * downloading the corresponding movie poster in the appropriate size.
  */
 class PosterGridViewHolder extends RecyclerView.ViewHolder {
 
@@ -46,13 +46,20 @@ class PosterGridViewHolder extends RecyclerView.ViewHolder {
 
     private static final int GLOBAL_LAYOUT_WATCHDOG_TIMEOUT = 1000; // ms
 
+    /**
+     * Grid posters are small and opaque, so they are decoded without alpha channel and with less
+     * color depth (half the memory of ARGB_8888).
+     */
+    private static final Bitmap.Config POSTER_BITMAP_CONFIG = Bitmap.Config.RGB_565;
+
     private int mViewHolderNumber;
     private Context mContext;
-    private MovieListing mMovieListing;
+    private PosterGridAdapter mAdapter;
     private int mPosition;
     private long mMovieId;
+    private ReadableMovieListingMovieDetails mMovieDetails;
 
-    private Subscription mMovieIdSubscription;
+    private Subscription mMovieDetailsSubscription;
     private ViewTreeObserver mViewTreeObserver;
     private ViewTreeObserver.OnGlobalLayoutListener mOnGlobalLayoutListener;
     private TimerTask mOnGlobalLayoutListenerWatchdog;
@@ -84,27 +91,90 @@ class PosterGridViewHolder extends RecyclerView.ViewHolder {
     }
 
     /**
-     * Binds the view. This triggers the request of the movieId for the adapter position and
-     * subsequently the movie poster.
+     * Binds the view. The view shows the pending state until the adapter delivers the movie ID for
+     * the position with setMovieId() (or an error with setMovieIdError()).
      *
-     * @param movieListing The current movie listing of the adapter.
+     * @param adapter The adapter (requests the movie ID again on retry).
      * @param position The position within the adapter.
      */
-    void bind(MovieListing movieListing, int position) {
+    void bind(PosterGridAdapter adapter, int position) {
         mPosition = position;
         mMovieId = -1;
+        mMovieDetails = null;
         Log.v(TAG, prepLogMsg("binding"));
 
-        mMovieListing = movieListing;
+        mAdapter = adapter;
 
         String positionString = (position + 1) + "."; // adapter position is zero-based
         mPositionView.setText(positionString);
 
-        loadMovieId();
+        mStatus = Status.PENDING;
+        setPendingView();
 
         EventBus.getDefault().register(this);
     }
 
+    /**
+     * Sets the movie ID for the bound position and loads the poster.
+     *
+     * @param movieId The movie ID (-1 if the listing has no movie at the position).
+     */
+    void setMovieId(long movieId) {
+        if (movieId == -1) {
+            setMovieIdError(new IndexOutOfBoundsException("no movie at position " + mPosition));
+            return;
+        }
+
+        mMovieId = movieId;
+        Log.v(TAG, prepLogMsg("received movie ID"));
+
+        mMovieDetails = MovieListingMovieDetailsStore.peekMovieDetails(mMovieId);
+        if (mMovieDetails != null) {
+            loadPoster();
+        } else {
+            loadMovieDetails();
+        }
+    }
+
+    /**
+     * Loads the movie details for the current movie ID when they are not in the details store (any
+     * more) by reloading the listing page of the position, then loads the poster. The details are
+     * kept for the rest of the binding, so the poster can be loaded even if they are evicted from
+     * the store again in the meantime.
+     */
+    private void loadMovieDetails() {
+        Log.v(TAG, prepLogMsg("movie details not in store - loading them"));
+
+        mMovieDetailsSubscription = mAdapter.getMovieDetails(mPosition, mMovieId)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<ReadableMovieListingMovieDetails>() {
+                    @Override
+                    public void call(ReadableMovieListingMovieDetails movieDetails) {
+                        mMovieDetails = movieDetails;
+                        loadPoster();
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        Log.e(TAG, prepLogMsg("error loading movie details: ") +
+                                throwable.toString());
+                        mStatus = Status.ERROR;
+                        setErrorView();
+                    }
+                });
+    }
+
+    /**
+     * Shows the error view because the movie ID for the bound position could not be loaded.
+     *
+     * @param throwable The error.
+     */
+    void setMovieIdError(Throwable throwable) {
+        Log.e(TAG, prepLogMsg("error loading movie ID: ") + throwable.toString());
+        mStatus = Status.ERROR;
+        setErrorView();
+    }
+
     /**
      * Unbinds the view. All pending requests are cancelled and the image is removed.
      */
@@ -113,8 +183,8 @@ class PosterGridViewHolder extends RecyclerView.ViewHolder {
 
         EventBus.getDefault().unregister(this);
 
-        if (mMovieIdSubscription != null) {
-            mMovieIdSubscription.unsubscribe();
+        if (mMovieDetailsSubscription != null) {
+            mMovieDetailsSubscription.unsubscribe();
         }
 
         removeOnGlobalLayoutListener();
@@ -127,6 +197,7 @@ class PosterGridViewHolder extends RecyclerView.ViewHolder {
             mPosterLoader.cancel();
         }
 
+        mMovieDetails = null;
         mPosterView.setImageDrawable(null);
         mNoPictureView.setText(null);
     }
@@ -174,59 +245,35 @@ class PosterGridViewHolder extends RecyclerView.ViewHolder {
     public void onRetryRequested(RetryRequestedEvent event) {
         if (mStatus == Status.ERROR) {
             if (mMovieId == -1) {
-                loadMovieId();
+                mStatus = Status.PENDING;
+                setPendingView();
+                mAdapter.requestMovieId(this, mPosition);
+            } else if (mMovieDetails == null) {
+                mStatus = Status.PENDING;
+                setPendingView();
+                loadMovieDetails();
             } else {
                 loadPoster();
             }
         }
     }
 
-    /**
-     * Requests the movieId for the current position in the listing. Triggers loading the poster on
-     * success.
-     */
-    private void loadMovieId() {
-        mStatus = Status.PENDING;
-        setPendingView();
-
-        Action1<Long> setMovieIdAndLoadPoster = new Action1<Long>() {
-            @Override
-            public void call(Long movieId) {
-                mMovieId = movieId;
-                Log.v(TAG, prepLogMsg("received movie ID"));
-                loadPoster();
-            }
-        };
-
-        Action1<Throwable> handleMovieIdFailure = new Action1<Throwable>() {
-            @Override
-            public void call(Throwable throwable) {
-                Log.e(TAG, prepLogMsg("error loading movie ID: ") + throwable.toString());
-                mMovieIdSubscription.unsubscribe();
-                mStatus = Status.ERROR;
-                setErrorView();
-            }
-        };
-
-        Log.v(TAG, prepLogMsg("loading movie ID"));
-
-        mMovieIdSubscription = mMovieListing.getMovieId(mPosition)
-                .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(setMovieIdAndLoadPoster, handleMovieIdFailure);
-    }
-
     /**
      * Gets the width of the poster view (listens for GlobalLayout events if necessary) and loads
-     * the poster. If the poster path is empty, shows a text message with the title.
+     * the poster of the current movie details. If the poster path is empty, shows a text message
+     * with the title. The loading indicator is hidden as soon as PosterLoader has loaded a preview
+     * of the poster.
      */
     private void loadPoster() {
-        if (getPosterPath() == null) {
+        final String posterPath = mMovieDetails.getPosterPath();
+
+        if (posterPath == null) {
             Log.d(TAG, prepLogMsg("no poster path"));
 
             mStatus = Status.SUCCESS;
 
-            String title = MovieListingMovieDetailsStore.getMovieDetails(mMovieId).getTitle();
-            setNoPictureView(title);
+            String title = mMovieDetails.getTitle();
+            setNoPictureView(title != null ? title : "");
 
             return;
         }
@@ -253,8 +300,8 @@ class PosterGridViewHolder extends RecyclerView.ViewHolder {
         if (mPosterView.getWidth() > 0 && mPosterView.getHeight() > 0) {
             Log.v(TAG, prepLogMsg("poster view already has size - loading poster"));
 
-            mPosterLoader = new PosterLoader(mContext, getPosterPath(), mPosterView.getWidth(),
-                    mPosterView, callback);
+            mPosterLoader = new PosterLoader(mContext, posterPath, mPosterView.getWidth(),
+                    mPosterView, callback, POSTER_BITMAP_CONFIG);
             mPosterLoader.loadPoster();
         } else {
             Log.v(TAG, prepLogMsg("poster view does not have size yet - listening for " +
@@ -268,8 +315,9 @@ class PosterGridViewHolder extends RecyclerView.ViewHolder {
                     removeOnGlobalLayoutListener();
                     mOnGlobalLayoutListenerWatchdog.cancel();
 
-                    mPosterLoader = new PosterLoader(mContext, getPosterPath(),
-                            mPosterView.getWidth(), mPosterView, callback);
+                    mPosterLoader = new PosterLoader(mContext, posterPath,
+                            mPosterView.getWidth(), mPosterView, callback,
+                            POSTER_BITMAP_CONFIG);
                     mPosterLoader.loadPoster();
                 }
             };
@@ -291,8 +339,9 @@ class PosterGridViewHolder extends RecyclerView.ViewHolder {
                         if (mPosterView.getWidth() > 0 && mPosterView.getHeight() > 0) {
                             Log.v(TAG, prepLogMsg("poster view has size - loading poster"));
 
-                            mPosterLoader = new PosterLoader(mContext, getPosterPath(),
-                                    mPosterView.getWidth(), mPosterView, callback);
+                            mPosterLoader = new PosterLoader(mContext, posterPath,
+                                    mPosterView.getWidth(), mPosterView, callback,
+                                    POSTER_BITMAP_CONFIG);
                             mPosterLoader.loadPoster();
                         } else {
                             Log.e(TAG, prepLogMsg("poster view still has no size - cannot load " +
@@ -308,24 +357,6 @@ class PosterGridViewHolder extends RecyclerView.ViewHolder {
         }
     }
 
-    /**
-     * Returns the poster path for the current movie (the path must be appended to the poster
-     * base URI).
-     *
-     * @return Poster path or null if no poster path is available or mMovieId is invalid.
-     */
-    private String getPosterPath() {
-        try {
-            MovieListingMovieDetails details =
-                    MovieListingMovieDetailsStore.getMovieDetails(mMovieId);
-            return details.getPosterPath();
-        } catch (IllegalArgumentException e) {
-            Log.e(TAG, prepLogMsg("invalid movie ID, could not get poster path from movie " +
-                    "listing details store"));
-            return null;
-        }
-    }
-
     private String prepLogMsg(String msg) {
         return "#" + mViewHolderNumber + " at position " + mPosition + " (movie ID " + mMovieId + "): " + msg;
     }
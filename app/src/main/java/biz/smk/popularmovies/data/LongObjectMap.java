@@ -0,0 +1,252 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.data;
+
+/**
+ * Hash map with primitive long keys and open addressing (linear probing). Compared to a
+ * HashMap<Long, V>, lookups do not box the key and entries need neither a boxed key nor a node
+ * object - just one slot in a long[] and one in an Object[].
+ *
+ * The map does not accept null values (a null value marks an empty slot). It is not thread-safe.
+ *
+ * @param <V> Type of the values.
+ */
+class LongObjectMap<V> {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private long[] mKeys;
+    private Object[] mValues;
+    private int mMask;
+    private int mSize;
+    private int mResizeThreshold;
+
+    /**
+     * Initializes an empty map.
+     */
+    LongObjectMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Initializes an empty map that can hold the given number of entries without resizing.
+     *
+     * @param expectedSize The expected number of entries.
+     */
+    LongObjectMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    private LongObjectMap(LongObjectMap<V> source) {
+        mKeys = source.mKeys.clone();
+        mValues = source.mValues.clone();
+        mMask = source.mMask;
+        mSize = source.mSize;
+        mResizeThreshold = source.mResizeThreshold;
+    }
+
+    /**
+     * Returns the value for the given key.
+     *
+     * @param key The key.
+     * @return The value or null if there is no entry for the key.
+     */
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        int index = indexFor(key);
+        Object value;
+
+        while ((value = mValues[index]) != null) {
+            if (mKeys[index] == key) return (V) value;
+            index = (index + 1) & mMask;
+        }
+
+        return null;
+    }
+
+    /**
+     * Adds or replaces the entry for the given key.
+     *
+     * @param key The key.
+     * @param value The value (must not be null).
+     * @return The previous value or null if there was no entry for the key.
+     */
+    @SuppressWarnings("unchecked")
+    V put(long key, V value) {
+        if (value == null) throw new NullPointerException("value must not be null");
+
+        int index = indexFor(key);
+        Object existingValue;
+
+        while ((existingValue = mValues[index]) != null) {
+            if (mKeys[index] == key) {
+                mValues[index] = value;
+                return (V) existingValue;
+            }
+            index = (index + 1) & mMask;
+        }
+
+        mKeys[index] = key;
+        mValues[index] = value;
+
+        if (++mSize > mResizeThreshold) {
+            resize(mValues.length * 2);
+        }
+
+        return null;
+    }
+
+    /**
+     * Removes the entry for the given key.
+     *
+     * @param key The key.
+     * @return The removed value or null if there was no entry for the key.
+     */
+    @SuppressWarnings("unchecked")
+    V remove(long key) {
+        int index = indexFor(key);
+        Object value;
+
+        while ((value = mValues[index]) != null) {
+            if (mKeys[index] == key) {
+                shiftEntriesBack(index);
+                mSize--;
+                return (V) value;
+            }
+            index = (index + 1) & mMask;
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return The number of entries.
+     */
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * Returns the number of slots. Together with keyAt() and valueAt() this allows to iterate over
+     * the entries (slots with a null value are empty).
+     *
+     * @return The number of slots.
+     */
+    int capacity() {
+        return mValues.length;
+    }
+
+    /**
+     * Returns the key in the given slot (only meaningful if valueAt() is not null).
+     *
+     * @param slot The slot (0 <= slot < capacity()).
+     * @return The key.
+     */
+    long keyAt(int slot) {
+        return mKeys[slot];
+    }
+
+    /**
+     * Returns the value in the given slot.
+     *
+     * @param slot The slot (0 <= slot < capacity()).
+     * @return The value or null if the slot is empty.
+     */
+    @SuppressWarnings("unchecked")
+    V valueAt(int slot) {
+        return (V) mValues[slot];
+    }
+
+    /**
+     * Returns a copy of this map.
+     *
+     * @return The copy.
+     */
+    LongObjectMap<V> copy() {
+        return new LongObjectMap<>(this);
+    }
+
+    /**
+     * Empties the slot at the given index and moves following entries of the probe sequence back,
+     * so that no lookup stops at the emptied slot too early (no tombstones needed).
+     *
+     * @param index The index of the slot to empty.
+     */
+    private void shiftEntriesBack(int index) {
+        int emptyIndex = index;
+        int nextIndex = (index + 1) & mMask;
+
+        while (mValues[nextIndex] != null) {
+            int idealIndex = indexFor(mKeys[nextIndex]);
+
+            // Move the entry if its ideal slot is not within (emptyIndex, nextIndex] (cyclic).
+            if (((nextIndex - idealIndex) & mMask) >= ((nextIndex - emptyIndex) & mMask)) {
+                mKeys[emptyIndex] = mKeys[nextIndex];
+                mValues[emptyIndex] = mValues[nextIndex];
+                emptyIndex = nextIndex;
+            }
+
+            nextIndex = (nextIndex + 1) & mMask;
+        }
+
+        mValues[emptyIndex] = null;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = mKeys;
+        Object[] oldValues = mValues;
+
+        allocate(capacity);
+
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == null) continue;
+
+            int index = indexFor(oldKeys[i]);
+            while (mValues[index] != null) {
+                index = (index + 1) & mMask;
+            }
+
+            mKeys[index] = oldKeys[i];
+            mValues[index] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        mKeys = new long[capacity];
+        mValues = new Object[capacity];
+        mMask = capacity - 1;
+        mResizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Returns the smallest power of two capacity that holds the given number of entries below the
+     * load factor.
+     */
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    /**
+     * Returns the ideal slot for the given key. The key is scrambled (Fibonacci hashing), because
+     * movie IDs are mostly small, dense numbers.
+     */
+    private int indexFor(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mMask;
+    }
+
+    @Override
+    public String toString() {
+        return "LongObjectMap{size=" + mSize + ", capacity=" + mValues.length + "}";
+    }
+
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.data;
+
+import biz.smk.popularmovies.tmdbapi.TmdbApiClientFactory;
+import biz.smk.popularmovies.tmdbapi.TmdbApiRateLimiter;
+import biz.smk.popularmovies.tmdbapi.responseobjects.MovieDetails;
+import biz.smk.popularmovies.tmdbapi.responseobjects.MovieReviews;
+import biz.smk.popularmovies.tmdbapi.responseobjects.MovieVideos;
+import biz.smk.popularmovies.utilities.SingleFlightCache;
+import rx.Single;
+import rx.functions.Func0;
+import rx.functions.Func1;
+
+/**
+ * Class for accessing per-movie TMDb data (full details, videos and reviews). All of it is fetched
+ * with one request per movie (using append_to_response). Requests are deduplicated: all subscribers
+ * for the same movie share one in-flight request, and the results of the most recently requested
+ * movies are kept in memory.
+ */
+public class MovieExtras {
+
+    private static final int MAX_CACHED_MOVIES = 20;
+
+    private static final SingleFlightCache<Long, MovieDetails> sDetailsCache =
+            new SingleFlightCache<>(MAX_CACHED_MOVIES);
+
+    /**
+     * Returns a RxJava Single that resolves to the full details of the given movie (including
+     * videos and reviews).
+     *
+     * @param movieId The movie ID.
+     * @return Single that resolves to the movie details.
+     */
+    public static Single<MovieDetails> getDetails(final long movieId) {
+        return sDetailsCache.get(movieId, new Func0<Single<MovieDetails>>() {
+            @Override
+            public Single<MovieDetails> call() {
+                return TmdbApiClientFactory.getApiClient(TmdbApiRateLimiter.Priority.HIGH)
+                        .getMovieDetails(movieId);
+            }
+        });
+    }
+
+    /**
+     * Returns a RxJava Single that resolves to the videos of the given movie.
+     *
+     * @param movieId The movie ID.
+     * @return Single that resolves to the movie videos.
+     */
+    public static Single<MovieVideos> getVideos(long movieId) {
+        return getDetails(movieId).map(new Func1<MovieDetails, MovieVideos>() {
+            @Override
+            public MovieVideos call(MovieDetails movieDetails) {
+                return movieDetails.getVideos();
+            }
+        });
+    }
+
+    /**
+     * Returns a RxJava Single that resolves to the reviews of the given movie.
+     *
+     * @param movieId The movie ID.
+     * @return Single that resolves to the movie reviews.
+     */
+    public static Single<MovieReviews> getReviews(long movieId) {
+        return getDetails(movieId).map(new Func1<MovieDetails, MovieReviews>() {
+            @Override
+            public MovieReviews call(MovieDetails movieDetails) {
+                return movieDetails.getReviews();
+            }
+        });
+    }
+
+}
@@ -4,32 +4,60 @@
 
 package biz.smk.popularmovies.data;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
 import android.database.ContentObserver;
 import android.os.Handler;
+import android.util.Log;
 
 import org.greenrobot.eventbus.EventBus;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import biz.smk.popularmovies.Application;
 import biz.smk.popularmovies.favoritemovies.FavoriteMoviesContract;
 import biz.smk.popularmovies.favoritemovies.FavoriteMoviesHelper;
+import biz.smk.popularmovies.listingcache.ListingCacheHelper;
 import biz.smk.popularmovies.tmdbapi.TmdbApiClient;
 import biz.smk.popularmovies.tmdbapi.TmdbApiClientFactory;
 import biz.smk.popularmovies.tmdbapi.TmdbApiConfiguration;
+import biz.smk.popularmovies.tmdbapi.TmdbApiRateLimiter;
 import biz.smk.popularmovies.tmdbapi.responseobjects.MovieListingMovieDetails;
 import biz.smk.popularmovies.tmdbapi.responseobjects.MovieListingPage;
+import biz.smk.popularmovies.tmdbapi.responseobjects.ReadableMovieListingMovieDetails;
+import biz.smk.popularmovies.utilities.ConcurrentLruCache;
+import retrofit2.adapter.rxjava.HttpException;
 import rx.Single;
 import rx.SingleEmitter;
+import rx.Subscription;
 import rx.functions.Action1;
 import rx.functions.Func1;
+import rx.functions.FuncN;
+import rx.subscriptions.SerialSubscription;
 
 /**
  * Class for accessing TMDb movie listings.
+ *
+ * The page cache, the prefetch requests and the favorite movies are kept in concurrent data
+ * structures, so that page arrivals on io threads do not contend with lookups from the main thread
+ * for a common lock.
+ *
+ * Listings only hold movie IDs (a long[] per page, plus the paging metadata). The movie details of
+ * all listings live once in the shared MovieListingMovieDetailsStore: when a page arrives, its
+ * movie details are added to the store and only their IDs are kept.
+ *
+ * The API serves at most MAX_LISTING_PAGE_NR pages per listing, even if it reports more results.
+ * The listing size is limited accordingly (see getTotalCount()), and pages that are known to be
+ * invalid (past the page limit, or rejected by the API) are not requested (again).
  */
 public class MovieListing {
 
@@ -38,16 +66,86 @@ public class MovieListing {
      */
     public enum Type { TOP_RATED, POPULAR, FAVORITES }
 
+    private static final String TAG = "MovieListing";
+
+    private static final int HTTP_UNPROCESSABLE_ENTITY = 422;
+
     private static Map<Type, MovieListing> sInstances = new HashMap<>();
 
+    /**
+     * Maximum number of listing pages (pending or successful requests) that are kept in memory per
+     * listing. Pages that have been evicted are requested again when they are needed (usually from
+     * the HTTP cache).
+     */
+    private static final int MAX_CACHED_PAGES = 25;
+
+    /**
+     * Maximum number of movie IDs in the page caches of all listings. The movie details store is
+     * sized to hold the details of all of them (the favorites listing has no page cache, its share
+     * is left for the favorite movies).
+     */
+    static final int MAX_CACHED_MOVIE_IDS = Type.values().length * MAX_CACHED_PAGES *
+            TmdbApiConfiguration.NUM_LISTING_ENTRIES_PER_PAGE;
+
+    /**
+     * Pages from the persistent listing cache are served immediately. If they are older than this
+     * age, they are revalidated in the background (matching the max-age of listing responses in
+     * the HTTP cache).
+     */
+    private static final long PERSISTED_PAGE_REVALIDATE_AGE = 60 * 60 * 1000; // 1 hour
+
+    /**
+     * Stands in for invalid pages when requesting movie IDs.
+     */
+    private static final PageIds EMPTY_PAGE = new PageIds(new long[0], 0, 0);
+
+    /**
+     * Stores the movie details of a page and maps the page to its movie IDs (see
+     * storeMovieDetails()).
+     */
+    private static final Func1<MovieListingPage, PageIds> STORE_MOVIE_DETAILS =
+            new Func1<MovieListingPage, PageIds>() {
+        @Override
+        public PageIds call(MovieListingPage movieListingPage) {
+            return storeMovieDetails(movieListingPage);
+        }
+    };
+
     private Type mType;
     private TmdbApiClient mApiClient;
+    private TmdbApiClient mReloadApiClient;
+    private TmdbApiClient mPrefetchApiClient;
+
+    private final AtomicReference<Single<long[]>> mFavoriteMovieIdsSingle = new AtomicReference<>();
+    private volatile long[] mFavoriteMovieIds;
+    private final AtomicBoolean mFavoriteMoviesContentObserverRegistered = new AtomicBoolean();
+
+    private final ConcurrentLruCache<Integer, PageEntry> mPageRequestsCache =
+            new ConcurrentLruCache<>(MAX_CACHED_PAGES);
+    private final AtomicInteger mPageCacheHitCount = new AtomicInteger();
+    private final AtomicInteger mPageCacheMissCount = new AtomicInteger();
+
+    private final ConcurrentHashMap<Integer, SerialSubscription> mPrefetchSubscriptions =
+            new ConcurrentHashMap<>();
 
-    private Single<List<MovieListingMovieDetails>> mFavoriteMoviesSingle;
-    private boolean MFavoriteMoviesContentObserverRegistered = false;
+    /**
+     * Pending reloads of pages whose movie details have been evicted from the details store (see
+     * getMovieDetails()).
+     */
+    private final ConcurrentHashMap<Integer, PageEntry> mPageReloads = new ConcurrentHashMap<>();
 
-    @SuppressLint("UseSparseArrays")
-    private Map<Integer, Single<MovieListingPage>> mPageRequestsCache = new HashMap<>();
+    /**
+     * The number of pages of this listing (as reported by the API, capped at MAX_LISTING_PAGE_NR).
+     */
+    private volatile int mPageLimit = TmdbApiConfiguration.MAX_LISTING_PAGE_NR;
+
+    /**
+     * Negative cache: pages within the page limit that the API rejected as invalid. Cleared when
+     * the first page is received from the API, because the listing (and thus its page count) may
+     * have changed.
+     */
+    private final Set<Integer> mInvalidPageNrs =
+            Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
 
     /**
      * Returns the MovieListing instance for the given MovieListing.Type.
@@ -67,7 +165,10 @@ public class MovieListing {
 
     private MovieListing(Type type) {
         mType = type;
-        mApiClient = TmdbApiClientFactory.createApiClient();
+        mApiClient = TmdbApiClientFactory.getApiClient(TmdbApiRateLimiter.Priority.HIGH);
+        mReloadApiClient = TmdbApiClientFactory.getApiClient(TmdbApiRateLimiter.Priority.NORMAL);
+        mPrefetchApiClient =
+                TmdbApiClientFactory.getApiClient(TmdbApiRateLimiter.Priority.PREFETCH);
     }
 
     public Type getType() {
@@ -79,133 +180,573 @@ public class MovieListing {
      * current listing.
      *
      * @param pageNr The page number of the TMDb API movie listing.
+     * @param apiClient The API client to use for the request.
      * @return The TMDb API response.
      */
-    private Single<MovieListingPage> getPage(final int pageNr) {
+    private Single<MovieListingPage> getPage(final int pageNr, TmdbApiClient apiClient) {
         switch(mType) {
             case TOP_RATED:
-                return mApiClient.getTopRatedMovies(pageNr);
+                return apiClient.getTopRatedMovies(pageNr);
             case POPULAR:
-                return mApiClient.getPopularMovies(pageNr);
+                return apiClient.getPopularMovies(pageNr);
             default:
                 throw new RuntimeException("Unhandled type " + mType.toString());
         }
     }
 
     /**
-     * Get the movie listing page with the given pageNr. If there already is a pending or successful
-     * request for that page, the corresponding RxJava Single will be returned. Otherwise a new
-     * request is made.
+     * Get the movie IDs of the listing page with the given pageNr. If there already is a pending or
+     * successful request for that page in the (bounded) page cache, the corresponding RxJava Single
+     * will be returned. Otherwise a new request is made.
      *
      * The movie details contained in the response are stored in the MovieListingMovieDetailsStore.
      *
+     * A pending prefetch request for the page is cancelled and replaced by a regular request.
+     *
+     * This method does not lock: the new page entry is added with putIfAbsent(), so concurrent
+     * callers for the same page share one request.
+     *
+     * For pages that are known to be invalid (see isInvalidPage()), no request is made; the Single
+     * fails with an IndexOutOfBoundsException. If the API rejects a page as invalid, the page is
+     * added to the negative cache.
+     *
      * @param pageNr The number of the page of this movie listing that shall be returned.
-     * @return The MovieListingPage for the given pageNr.
+     * @return The PageIds for the given pageNr.
      */
-    private synchronized Single<MovieListingPage> getPageWithCaching(final int pageNr) {
-        Single<MovieListingPage> pageSingle = mPageRequestsCache.get(pageNr);
+    private Single<PageIds> getPageWithCaching(final int pageNr) {
+        if (isInvalidPage(pageNr)) {
+            return Single.error(new IndexOutOfBoundsException("Page " + pageNr + " of " + mType +
+                    " is invalid (page limit: " + mPageLimit + ")"));
+        }
 
-        if (pageSingle == null) {
-            Action1<MovieListingPage> storeMovieDetails = new Action1<MovieListingPage>() {
+        PageEntry pageEntry = mPageRequestsCache.get(pageNr);
+
+        if (pageEntry != null) {
+            mPageCacheHitCount.incrementAndGet();
+        } else {
+            final PageEntry newPageEntry = new PageEntry();
+
+            Action1<PageIds> setPage = new Action1<PageIds>() {
                 @Override
-                public void call(MovieListingPage movieListingPage) {
-                    for (MovieListingMovieDetails details : movieListingPage.getResults()) {
-                        MovieListingMovieDetailsStore.addMovieDetails(details);
-                    }
+                public void call(PageIds page) {
+                    updatePageLimit(page);
+                    newPageEntry.page = page;
                 }
             };
 
             Action1<Throwable> removeFailedSingle = new Action1<Throwable>() {
                 @Override
                 public void call(Throwable throwable) {
-                    synchronized (MovieListing.this) {
-                        mPageRequestsCache.remove(pageNr);
-                    }
+                    mPageRequestsCache.remove(pageNr, newPageEntry);
+                    rememberInvalidPage(pageNr, throwable);
                 }
             };
 
-            pageSingle = getPage(pageNr)
-                    .doOnSuccess(storeMovieDetails)
+            // The Single is lazy, so creating it for an entry that loses the race is cheap.
+            newPageEntry.single = getPageOfflineFirst(pageNr, mApiClient)
+                    .map(STORE_MOVIE_DETAILS)
+                    .doOnSuccess(setPage)
                     .doOnError(removeFailedSingle)
                     .cache();
 
-            mPageRequestsCache.put(pageNr, pageSingle);
+            pageEntry = mPageRequestsCache.putIfAbsent(pageNr, newPageEntry);
+
+            if (pageEntry != null) {
+                mPageCacheHitCount.incrementAndGet();
+            } else {
+                mPageCacheMissCount.incrementAndGet();
+                cancelPrefetch(pageNr);
+                pageEntry = newPageEntry;
+            }
+        }
+        return pageEntry.single;
+    }
+
+    /**
+     * Returns a Single that resolves to the given page from the persistent listing cache if it is
+     * there, otherwise to the page from the API. Pages from the API are written to the persistent
+     * listing cache. Stale pages from the persistent listing cache are revalidated in the
+     * background; the fresh page replaces the stale one in the page cache.
+     *
+     * @param pageNr The page number.
+     * @param apiClient The API client to use if the page has to be requested.
+     * @return Single that resolves to the page.
+     */
+    private Single<MovieListingPage> getPageOfflineFirst(final int pageNr,
+                                                         TmdbApiClient apiClient) {
+        if (pageNr > ListingCacheHelper.MAX_PERSISTED_PAGE_NR) {
+            return getPage(pageNr, apiClient);
+        }
+
+        final Single<MovieListingPage> networkSingle = getPersistedPage(pageNr, apiClient);
+
+        return ListingCacheHelper.getPage(mType.toString(), pageNr)
+                .flatMap(new Func1<ListingCacheHelper.CachedPage, Single<MovieListingPage>>() {
+                    @Override
+                    public Single<MovieListingPage> call(ListingCacheHelper.CachedPage cachedPage) {
+                        if (cachedPage == null) return networkSingle;
+
+                        long age = System.currentTimeMillis() - cachedPage.fetchTime;
+                        if (age < 0 || age > PERSISTED_PAGE_REVALIDATE_AGE) {
+                            revalidatePage(pageNr);
+                        }
+
+                        return Single.just(cachedPage.page);
+                    }
+                });
+    }
+
+    /**
+     * Returns a Single for an API request for the given page that writes the page to the
+     * persistent listing cache on success. A fresh first page also clears the negative cache.
+     *
+     * @param pageNr The page number.
+     * @param apiClient The API client to use for the request.
+     * @return Single that resolves to the page.
+     */
+    private Single<MovieListingPage> getPersistedPage(final int pageNr, TmdbApiClient apiClient) {
+        return getPage(pageNr, apiClient).doOnSuccess(new Action1<MovieListingPage>() {
+            @Override
+            public void call(MovieListingPage movieListingPage) {
+                ListingCacheHelper.putPage(mType.toString(), pageNr, movieListingPage);
+                if (pageNr == 1) mInvalidPageNrs.clear();
+            }
+        });
+    }
+
+    /**
+     * Requests a page that was served from the persistent listing cache from the API (with
+     * prefetch priority) and replaces the page in the page cache when the request succeeds. Errors
+     * are ignored - the persisted page remains in use.
+     *
+     * @param pageNr The page number.
+     */
+    private void revalidatePage(final int pageNr) {
+        getPersistedPage(pageNr, mPrefetchApiClient).subscribe(new Action1<MovieListingPage>() {
+            @Override
+            public void call(MovieListingPage movieListingPage) {
+                PageIds page = storeMovieDetails(movieListingPage);
+                updatePageLimit(page);
+                mPageRequestsCache.put(pageNr, new PageEntry(page));
+            }
+        }, new Action1<Throwable>() {
+            @Override
+            public void call(Throwable throwable) {
+                Log.w(TAG, "Could not revalidate page " + pageNr + " of " + mType, throwable);
+            }
+        });
+    }
+
+    /**
+     * Stores the movie details contained in the given page in the MovieListingMovieDetailsStore and
+     * returns the IDs of the movies on the page.
+     *
+     * @param movieListingPage The movie listing page.
+     * @return The movie IDs and paging metadata of the page.
+     */
+    private static PageIds storeMovieDetails(MovieListingPage movieListingPage) {
+        List<MovieListingMovieDetails> movieList = movieListingPage.getResults();
+        MovieListingMovieDetailsStore.addMovieDetails(movieList);
+        Integer totalResults = movieListingPage.getTotalResults();
+        Integer totalPages = movieListingPage.getTotalPages();
+
+        return new PageIds(toMovieIds(movieList), totalResults != null ? totalResults : 0,
+                totalPages != null ? totalPages : 0);
+    }
+
+    /**
+     * Returns the IDs of the given movies.
+     *
+     * @param movieList The movies.
+     * @return The movie IDs (in the same order).
+     */
+    private static long[] toMovieIds(List<MovieListingMovieDetails> movieList) {
+        long[] movieIds = new long[movieList.size()];
+        for (int i = 0; i < movieIds.length; i++) {
+            movieIds[i] = movieList.get(i).getId();
+        }
+        return movieIds;
+    }
+
+    /**
+     * Prefetches the pages that follow the page containing the given index in the given
+     * direction. Pages that are already cached or being prefetched are skipped. Prefetch requests
+     * are sent with the lowest rate limiter priority; when they succeed, the pages are added to the
+     * page cache.
+     *
+     * Prefetching is not supported for the favorites listing (it is loaded completely anyway).
+     *
+     * @param index (Zero-based) movie index from where to look ahead (e.g. the last visible index).
+     * @param direction 1 to prefetch the following pages, -1 to prefetch the preceding pages.
+     * @param pageCount The number of pages to prefetch.
+     */
+    public void prefetchPages(int index, int direction, int pageCount) {
+        if (mType == Type.FAVORITES) return;
+
+        int pageNr = calculatePageNr(index);
+
+        for (int i = 1; i <= pageCount; i++) {
+            int prefetchPageNr = pageNr + i * direction;
+            if (prefetchPageNr < 1 || prefetchPageNr > mPageLimit) break;
+
+            prefetchPage(prefetchPageNr);
+        }
+    }
+
+    /**
+     * Prefetches the page with the given pageNr unless it is already cached or being prefetched,
+     * or known to be invalid.
+     *
+     * @param pageNr The page number.
+     */
+    private void prefetchPage(final int pageNr) {
+        if (isInvalidPage(pageNr) || mPrefetchSubscriptions.containsKey(pageNr) ||
+                mPageRequestsCache.get(pageNr) != null) {
+            return;
+        }
+
+        // Claim the page before subscribing, so that concurrent calls do not prefetch it twice.
+        final SerialSubscription subscription = new SerialSubscription();
+        if (mPrefetchSubscriptions.putIfAbsent(pageNr, subscription) != null) return;
+
+        Action1<MovieListingPage> addPageToCache = new Action1<MovieListingPage>() {
+            @Override
+            public void call(MovieListingPage movieListingPage) {
+                mPrefetchSubscriptions.remove(pageNr, subscription);
+
+                // Storing the movie details is harmless if a regular request won the race.
+                PageIds page = storeMovieDetails(movieListingPage);
+                updatePageLimit(page);
+                mPageRequestsCache.putIfAbsent(pageNr, new PageEntry(page));
+            }
+        };
+
+        Action1<Throwable> removeFailedPrefetch = new Action1<Throwable>() {
+            @Override
+            public void call(Throwable throwable) {
+                mPrefetchSubscriptions.remove(pageNr, subscription);
+                rememberInvalidPage(pageNr, throwable);
+            }
+        };
+
+        subscription.set(getPage(pageNr, mPrefetchApiClient)
+                .subscribe(addPageToCache, removeFailedPrefetch));
+    }
+
+    /**
+     * Cancels the prefetch request for the page with the given pageNr (if there is one).
+     *
+     * @param pageNr The page number.
+     */
+    private void cancelPrefetch(int pageNr) {
+        Subscription subscription = mPrefetchSubscriptions.remove(pageNr);
+        if (subscription != null) {
+            subscription.unsubscribe();
+        }
+    }
+
+    /**
+     * Cancels all pending prefetch requests (e.g. when the scroll direction changes).
+     */
+    public void cancelPrefetching() {
+        for (Integer pageNr : mPrefetchSubscriptions.keySet()) {
+            cancelPrefetch(pageNr);
+        }
+    }
+
+    /**
+     * Returns whether the given page is known to be invalid: before the first page, after the last
+     * page the API serves for this listing, or rejected by the API before.
+     *
+     * @param pageNr The page number.
+     * @return True if the page shall not be requested.
+     */
+    private boolean isInvalidPage(int pageNr) {
+        return pageNr < 1 || pageNr > mPageLimit || mInvalidPageNrs.contains(pageNr);
+    }
+
+    /**
+     * Updates the page limit of this listing from the total page count of the given page.
+     *
+     * @param page A page of this listing.
+     */
+    private void updatePageLimit(PageIds page) {
+        if (page.totalPages > 0) {
+            mPageLimit = Math.min(page.totalPages, TmdbApiConfiguration.MAX_LISTING_PAGE_NR);
+        }
+    }
+
+    /**
+     * Adds the given page to the negative cache if the API rejected it as invalid (422
+     * Unprocessable Entity, which TMDb returns for page numbers out of range). Other errors (e.g.
+     * network errors, 401 for a bad API key or 429 Too Many Requests) are not specific to the
+     * page.
+     *
+     * @param pageNr The page number.
+     * @param throwable The request error.
+     */
+    private void rememberInvalidPage(int pageNr, Throwable throwable) {
+        if (!(throwable instanceof HttpException)) return;
+
+        int code = ((HttpException) throwable).code();
+        if (code == HTTP_UNPROCESSABLE_ENTITY) {
+            Log.w(TAG, "Page " + pageNr + " of " + mType + " rejected with status " + code);
+            mInvalidPageNrs.add(pageNr);
         }
-        return pageSingle;
     }
 
     /**
-     * Returns a RxJava Single that resolves to the total count of movies in this listing.
+     * Returns the number of page requests that found the page in the page cache.
+     *
+     * @return The number of page cache hits.
+     */
+    public int getPageCacheHitCount() {
+        return mPageCacheHitCount.get();
+    }
+
+    /**
+     * Returns the number of page requests that did not find the page in the page cache.
+     *
+     * @return The number of page cache misses.
+     */
+    public int getPageCacheMissCount() {
+        return mPageCacheMissCount.get();
+    }
+
+    /**
+     * Returns the number of pages that have been evicted from the page cache.
+     *
+     * @return The number of page cache evictions.
+     */
+    public int getPageCacheEvictionCount() {
+        return mPageRequestsCache.getEvictionCount();
+    }
+
+    /**
+     * Returns a RxJava Single that resolves to the total count of movies in this listing. The count
+     * is limited to the movies on the pages that the API actually serves (MAX_LISTING_PAGE_NR).
      *
      * @return The total count of movies in this movie listing.
      */
     public Single<Integer> getTotalCount() {
         if (mType == Type.FAVORITES) {
-            return getFavoriteMovies().map(new Func1<List<MovieListingMovieDetails>, Integer>() {
+            return getFavoriteMovieIds().map(new Func1<long[], Integer>() {
                 @Override
-                public Integer call(List<MovieListingMovieDetails> movieList) {
-                    return movieList.size();
+                public Integer call(long[] movieIds) {
+                    return movieIds.length;
                 }
             });
         }
 
-        return getPageWithCaching(1).map(new Func1<MovieListingPage, Integer>() {
+        return getPageWithCaching(1).map(new Func1<PageIds, Integer>() {
             @Override
-            public Integer call(MovieListingPage movieListingPage) {
-                return movieListingPage.getTotalResults();
+            public Integer call(PageIds page) {
+                int maxResults = TmdbApiConfiguration.MAX_LISTING_PAGE_NR *
+                        TmdbApiConfiguration.NUM_LISTING_ENTRIES_PER_PAGE;
+                return Math.min(page.totalResults, maxResults);
             }
         });
     }
 
     /**
-     * Returns the movie ID for the given (zero-based) index within this listing.
+     * Returns the movie ID for the given (zero-based) index within this listing if the page
+     * containing the index has already been loaded. This never triggers a request and never
+     * blocks, so it can be used to bind grid cells of resident pages synchronously.
      *
      * @param index (Zero-based) movie index.
-     * @return The movie ID.
+     * @return The movie ID or -1 if the page containing the index has not been loaded (yet).
      */
-    public Single<Long> getMovieId(final int index) {
+    public long peekMovieId(int index) {
+        long[] movieIds;
+        int indexInArray;
+
         if (mType == Type.FAVORITES) {
-            return getFavoriteMovies().map(new Func1<List<MovieListingMovieDetails>, Long>() {
+            movieIds = mFavoriteMovieIds;
+            indexInArray = index;
+        } else {
+            PageEntry pageEntry = mPageRequestsCache.get(calculatePageNr(index));
+            if (pageEntry == null || pageEntry.page == null) return -1;
+
+            movieIds = pageEntry.page.movieIds;
+            indexInArray = calculateIndexOnPage(index);
+        }
+
+        if (movieIds == null || indexInArray >= movieIds.length) return -1;
+        return movieIds[indexInArray];
+    }
+
+    /**
+     * Returns a Single that resolves to the movie IDs for the (zero-based) indices [from, to)
+     * within this listing. All pages covering the range are requested at once, so a caller can
+     * fetch the IDs of a whole range of grid cells with one subscription. Indices for which the
+     * listing has no entry (e.g. a last page with fewer entries than expected, or indices on
+     * invalid pages) get the ID -1.
+     *
+     * @param from First (zero-based) movie index (inclusive).
+     * @param to Last (zero-based) movie index (exclusive).
+     * @return Single that resolves to an array with to - from movie IDs.
+     */
+    public Single<long[]> getMovieIds(final int from, final int to) {
+        if (mType == Type.FAVORITES) {
+            return getFavoriteMovieIds().map(new Func1<long[], long[]>() {
                 @Override
-                public Long call(List<MovieListingMovieDetails> movieList) {
-                    return movieList.get(index).getId();
+                public long[] call(long[] favoriteMovieIds) {
+                    long[] movieIds = new long[to - from];
+                    for (int index = from; index < to; index++) {
+                        movieIds[index - from] =
+                                index < favoriteMovieIds.length ? favoriteMovieIds[index] : -1;
+                    }
+                    return movieIds;
                 }
             });
         }
 
-        int pageNr = calculatePageNr(index);
+        final int firstPageNr = calculatePageNr(from);
+        int lastPageNr = calculatePageNr(to - 1);
+
+        List<Single<PageIds>> pageSingles = new ArrayList<>();
+        for (int pageNr = firstPageNr; pageNr <= lastPageNr; pageNr++) {
+            // Invalid pages have no entries (instead of failing the whole range).
+            pageSingles.add(isInvalidPage(pageNr) ?
+                    Single.just(EMPTY_PAGE) : getPageWithCaching(pageNr));
+        }
 
-        return getPageWithCaching(pageNr).map(new Func1<MovieListingPage, Long>() {
+        return Single.zip(pageSingles, new FuncN<long[]>() {
             @Override
-            public Long call(MovieListingPage movieListingPage) {
-                int indexOnPage = calculateIndexOnPage(index);
-                return movieListingPage.getResults().get(indexOnPage).getId();
+            public long[] call(Object... pages) {
+                long[] movieIds = new long[to - from];
+                for (int index = from; index < to; index++) {
+                    PageIds page = (PageIds) pages[calculatePageNr(index) - firstPageNr];
+                    int indexOnPage = calculateIndexOnPage(index);
+
+                    movieIds[index - from] = indexOnPage < page.movieIds.length ?
+                            page.movieIds[indexOnPage] : -1;
+                }
+                return movieIds;
             }
         });
     }
 
     /**
-     * Returns a Single that resolves to a list of the favorite movies.
+     * Returns a Single that resolves to the movie details of the movie with the given ID at the
+     * given (zero-based) index within this listing. If the details are no longer in the
+     * MovieListingMovieDetailsStore (evicted), the listing page containing the index is reloaded
+     * (from the persistent listing cache if possible, otherwise from the API with normal priority)
+     * and replaces the page in the page cache. Concurrent calls for movies on the same page share
+     * one reload. For the favorites listing, the favorite movies are reloaded from the database.
+     *
+     * The Single fails with a NoSuchElementException if the movie is not in the listing any more
+     * (e.g. the reloaded page has changed).
      *
-     * @return Single that resolves to a list of the favorite movies.
+     * @param index (Zero-based) movie index.
+     * @param movieId The ID of the movie at the index.
+     * @return Single that resolves to the movie details.
      */
-    private synchronized Single<List<MovieListingMovieDetails>> getFavoriteMovies() {
-        if (mFavoriteMoviesSingle == null) {
-            mFavoriteMoviesSingle = Single.fromEmitter(
-                    new Action1<SingleEmitter<List<MovieListingMovieDetails>>>() {
+    public Single<ReadableMovieListingMovieDetails> getMovieDetails(int index,
+                                                                    final long movieId) {
+        ReadableMovieListingMovieDetails movieDetails =
+                MovieListingMovieDetailsStore.peekMovieDetails(movieId);
+        if (movieDetails != null) return Single.just(movieDetails);
+
+        Single<?> reloadSingle = mType == Type.FAVORITES ?
+                reloadFavoriteMovieIds() : reloadPage(calculatePageNr(index));
+
+        return reloadSingle.map(new Func1<Object, ReadableMovieListingMovieDetails>() {
+            @Override
+            public ReadableMovieListingMovieDetails call(Object reloaded) {
+                ReadableMovieListingMovieDetails movieDetails =
+                        MovieListingMovieDetailsStore.peekMovieDetails(movieId);
+                if (movieDetails == null) {
+                    throw new NoSuchElementException("Movie " + movieId + " is not in " + mType +
+                            " any more");
+                }
+                return movieDetails;
+            }
+        });
+    }
+
+    /**
+     * Reloads the page with the given pageNr (its movie details have been evicted from the store)
+     * and puts it into the page cache. A pending reload of the page is shared.
+     *
+     * @param pageNr The page number.
+     * @return Single that resolves to the reloaded page.
+     */
+    private Single<PageIds> reloadPage(final int pageNr) {
+        PageEntry pageEntry = mPageReloads.get(pageNr);
+        if (pageEntry != null) return pageEntry.single;
+
+        final PageEntry newPageEntry = new PageEntry();
+
+        Action1<PageIds> setPage = new Action1<PageIds>() {
+            @Override
+            public void call(PageIds page) {
+                updatePageLimit(page);
+                newPageEntry.page = page;
+                mPageRequestsCache.put(pageNr, newPageEntry);
+                mPageReloads.remove(pageNr, newPageEntry);
+            }
+        };
+
+        Action1<Throwable> removeFailedReload = new Action1<Throwable>() {
+            @Override
+            public void call(Throwable throwable) {
+                mPageReloads.remove(pageNr, newPageEntry);
+            }
+        };
+
+        // The Single is lazy, so creating it for an entry that loses the race is cheap.
+        newPageEntry.single = getPageOfflineFirst(pageNr, mReloadApiClient)
+                .map(STORE_MOVIE_DETAILS)
+                .doOnSuccess(setPage)
+                .doOnError(removeFailedReload)
+                .cache();
+
+        pageEntry = mPageReloads.putIfAbsent(pageNr, newPageEntry);
+        return pageEntry != null ? pageEntry.single : newPageEntry.single;
+    }
+
+    /**
+     * Reloads the favorite movies from the database (their movie details have been evicted from
+     * the store). A pending load of the favorite movies is shared.
+     *
+     * @return Single that resolves to the IDs of the favorite movies.
+     */
+    private Single<long[]> reloadFavoriteMovieIds() {
+        // mFavoriteMovieIds is only set once the current Single has succeeded.
+        Single<long[]> favoriteMovieIdsSingle = mFavoriteMovieIdsSingle.get();
+        if (favoriteMovieIdsSingle != null && mFavoriteMovieIds != null &&
+                mFavoriteMovieIdsSingle.compareAndSet(favoriteMovieIdsSingle, null)) {
+            mFavoriteMovieIds = null;
+        }
+
+        return getFavoriteMovieIds();
+    }
+
+    /**
+     * Returns a Single that resolves to the IDs of the favorite movies. Their movie details are
+     * added to the MovieListingMovieDetailsStore.
+     *
+     * @return Single that resolves to the IDs of the favorite movies.
+     */
+    private Single<long[]> getFavoriteMovieIds() {
+        Single<long[]> favoriteMovieIdsSingle;
+
+        while ((favoriteMovieIdsSingle = mFavoriteMovieIdsSingle.get()) == null) {
+            Single<long[]> newFavoriteMovieIdsSingle = Single.fromEmitter(
+                    new Action1<SingleEmitter<long[]>>() {
                 @Override
-                public void call(
-                        final SingleEmitter<List<MovieListingMovieDetails>> singleEmitter) {
+                public void call(final SingleEmitter<long[]> singleEmitter) {
                     FavoriteMoviesHelper.GetMoviesCallback callback =
                             new FavoriteMoviesHelper.GetMoviesCallback() {
                                 public void onMoviesReceived(
                                         List<MovieListingMovieDetails> movieList) {
                                     if (movieList != null) {
-                                        for (MovieListingMovieDetails details : movieList) {
-                                            MovieListingMovieDetailsStore.addMovieDetails(details);
-                                        }
-
-                                        singleEmitter.onSuccess(movieList);
+                                        MovieListingMovieDetailsStore
+                                                .addMovieDetails(movieList);
+                                        long[] movieIds = toMovieIds(movieList);
+                                        mFavoriteMovieIds = movieIds;
+                                        singleEmitter.onSuccess(movieIds);
                                     } else {
                                         singleEmitter.onError(new RuntimeException("could not " +
                                                 "get favorite movies"));
@@ -217,30 +758,34 @@ public class MovieListing {
                     FavoriteMoviesHelper.getMovies(context.getContentResolver(), callback);
                 }
             }).cache();
+
+            // If another thread was faster, loop and use its Single.
+            if (mFavoriteMovieIdsSingle.compareAndSet(null, newFavoriteMovieIdsSingle)) {
+                favoriteMovieIdsSingle = newFavoriteMovieIdsSingle;
+                break;
+            }
         }
 
         registerFavoriteMoviesContentObserver();
 
-        return mFavoriteMoviesSingle;
+        return favoriteMovieIdsSingle;
     }
 
     /**
      * Registers a content observer for the favorite movies database and invalidates the cache when
      * changes occur.
      */
-    private synchronized void registerFavoriteMoviesContentObserver() {
-        if (!MFavoriteMoviesContentObserverRegistered) {
-            MFavoriteMoviesContentObserverRegistered = true;
+    private void registerFavoriteMoviesContentObserver() {
+        if (mFavoriteMoviesContentObserverRegistered.compareAndSet(false, true)) {
             Context context = Application.getContext();
             context.getContentResolver().registerContentObserver(
                     FavoriteMoviesContract.FavoriteMovieEntry.CONTENT_URI, true,
                     new ContentObserver(new Handler()) {
                 @Override
                 public void onChange(boolean selfChange) {
-                    synchronized (MovieListing.this) {
-                        mFavoriteMoviesSingle = null;
-                        EventBus.getDefault().post(new FavoriteMoviesChangedEvent());
-                    }
+                    mFavoriteMovieIdsSingle.set(null);
+                    mFavoriteMovieIds = null;
+                    EventBus.getDefault().post(new FavoriteMoviesChangedEvent());
                 }
             });
         }
@@ -268,6 +813,42 @@ public class MovieListing {
         return indexWithinListing % entriesPerPage;
     }
 
+    /**
+     * A listing page as kept in the page cache: the IDs of the movies on the page (their details
+     * are in the MovieListingMovieDetailsStore) and the paging metadata.
+     */
+    private static class PageIds {
+
+        final long[] movieIds;
+        final int totalResults;
+        final int totalPages;
+
+        PageIds(long[] movieIds, int totalResults, int totalPages) {
+            this.movieIds = movieIds;
+            this.totalResults = totalResults;
+            this.totalPages = totalPages;
+        }
+
+    }
+
+    /**
+     * Entry of the page cache: the (pending or successful) request for a page and the page itself
+     * once the request succeeded.
+     */
+    private static class PageEntry {
+
+        Single<PageIds> single;
+        volatile PageIds page;
+
+        PageEntry() {}
+
+        PageEntry(PageIds page) {
+            this.single = Single.just(page);
+            this.page = page;
+        }
+
+    }
+
     /**
      * Emitted when the favorite movies listing changes.
      */
@@ -0,0 +1,365 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import biz.smk.popularmovies.tmdbapi.responseobjects.LazyMovieListingMovieDetails;
+import biz.smk.popularmovies.tmdbapi.responseobjects.MovieListingMovieDetails;
+import biz.smk.popularmovies.tmdbapi.responseobjects.ReadableMovieListingMovieDetails;
+import biz.smk.popularmovies.utilities.DateUtils;
+import biz.smk.popularmovies.utilities.PosterLoader;
+import biz.smk.popularmovies.utilities.StringPool;
+
+/**
+ * Compact, immutable column store for a batch of movie details (usually one listing page). Instead
+ * of one bean per movie with boxed numbers and a List<Integer> of genre IDs, every field is kept
+ * in a parallel array: primitive arrays for the numbers, one bit set per movie for the booleans and
+ * for null values, and one packed int array for the genre IDs of all movies. Language codes and
+ * release dates repeat a lot and are taken from a shared string pool.
+ *
+ * The constructor also normalizes the values that would otherwise be recomputed on every read
+ * (on the UI thread): release dates are parsed into epoch days, and poster paths are brought into
+ * the form that PosterLoader can append to a poster base URI without building a new Uri.
+ * Movie details are added to the store on the io thread that received them, so this work does not
+ * happen on the UI thread.
+ *
+ * Movie details from listing pages are only partially deserialized (LazyMovieListingMovieDetails).
+ * For them, only the fields for the poster grid (id, title, poster path) go into the columns; the
+ * remaining fields are kept in their compact JSON form and decoded (and normalized) when one of
+ * them is first read, e.g. by the movie details screen. The decoded row replaces the JSON form, so
+ * each movie is decoded at most once.
+ *
+ * getRow() returns a lightweight, read-only view of one movie, which implements the getters of
+ * ReadableMovieListingMovieDetails by reading from the columns. Views are cheap to create and can
+ * be dropped right after use.
+ *
+ * Apart from decoding lazy rows (which is done under the lock of the column store), the columns
+ * are never modified after construction, so they can be shared between threads.
+ */
+class MovieListingMovieDetailsColumns {
+
+    private static final StringPool sStringPool = new StringPool(4096);
+
+    // Bits of mFlags.
+    private static final int FLAG_ADULT = 1;
+    private static final int FLAG_VIDEO = 1 << 1;
+    private static final int FLAG_HAS_ADULT = 1 << 2;
+    private static final int FLAG_HAS_VIDEO = 1 << 3;
+    private static final int FLAG_HAS_POPULARITY = 1 << 4;
+    private static final int FLAG_HAS_VOTE_COUNT = 1 << 5;
+    private static final int FLAG_HAS_VOTE_AVERAGE = 1 << 6;
+    private static final int FLAG_HAS_GENRE_IDS = 1 << 7;
+
+    private final long[] mIds;
+    private final double[] mPopularities;
+    private final double[] mVoteAverages;
+    private final int[] mVoteCounts;
+    private final int[] mReleaseEpochDays;
+    private final byte[] mFlags;
+
+    // The genre IDs of row i are at mGenreIds[mGenreIdOffsets[i]] until (excluding)
+    // mGenreIds[mGenreIdOffsets[i + 1]].
+    private final int[] mGenreIds;
+    private final int[] mGenreIdOffsets;
+
+    private final String[] mTitles;
+    private final String[] mOriginalTitles;
+    private final String[] mOriginalLanguages;
+    private final String[] mOverviews;
+    private final String[] mReleaseDates;
+    private final String[] mPosterPaths;
+    private final String[] mBackdropPaths;
+
+    // For rows of lazy movie details: the not yet decoded fields (byte[]) or, once they have been
+    // decoded, the decoded row (Row of a column store with one row). Null for other rows.
+    private final Object[] mLazyRows;
+
+    /**
+     * Copies the given movie details into a new column store. The movie details must have an id.
+     *
+     * @param movieDetailsList The movie details.
+     */
+    MovieListingMovieDetailsColumns(List<MovieListingMovieDetails> movieDetailsList) {
+        int size = movieDetailsList.size();
+
+        mIds = new long[size];
+        mPopularities = new double[size];
+        mVoteAverages = new double[size];
+        mVoteCounts = new int[size];
+        mReleaseEpochDays = new int[size];
+        mFlags = new byte[size];
+        mGenreIdOffsets = new int[size + 1];
+        mTitles = new String[size];
+        mOriginalTitles = new String[size];
+        mOriginalLanguages = new String[size];
+        mOverviews = new String[size];
+        mReleaseDates = new String[size];
+        mPosterPaths = new String[size];
+        mBackdropPaths = new String[size];
+        mLazyRows = new Object[size];
+
+        int genreIdCount = 0;
+        for (MovieListingMovieDetails movieDetails : movieDetailsList) {
+            if (movieDetails instanceof LazyMovieListingMovieDetails) continue;
+            List<Integer> genreIds = movieDetails.getGenreIds();
+            if (genreIds != null) genreIdCount += genreIds.size();
+        }
+        mGenreIds = new int[genreIdCount];
+
+        int genreIdOffset = 0;
+        for (int row = 0; row < size; row++) {
+            MovieListingMovieDetails movieDetails = movieDetailsList.get(row);
+            int flags = 0;
+
+            mIds[row] = movieDetails.getId();
+            mTitles[row] = movieDetails.getTitle();
+            mPosterPaths[row] = PosterLoader.normalizePosterPath(movieDetails.getPosterPath());
+            mGenreIdOffsets[row] = genreIdOffset;
+
+            if (movieDetails instanceof LazyMovieListingMovieDetails) {
+                mLazyRows[row] =
+                        ((LazyMovieListingMovieDetails) movieDetails).getRemainingFields();
+                continue;
+            }
+
+            if (movieDetails.getPopularity() != null) {
+                mPopularities[row] = movieDetails.getPopularity();
+                flags |= FLAG_HAS_POPULARITY;
+            }
+            if (movieDetails.getVoteAverage() != null) {
+                mVoteAverages[row] = movieDetails.getVoteAverage();
+                flags |= FLAG_HAS_VOTE_AVERAGE;
+            }
+            if (movieDetails.getVoteCount() != null) {
+                mVoteCounts[row] = movieDetails.getVoteCount();
+                flags |= FLAG_HAS_VOTE_COUNT;
+            }
+            if (movieDetails.getAdult() != null) {
+                flags |= FLAG_HAS_ADULT | (movieDetails.getAdult() ? FLAG_ADULT : 0);
+            }
+            if (movieDetails.getVideo() != null) {
+                flags |= FLAG_HAS_VIDEO | (movieDetails.getVideo() ? FLAG_VIDEO : 0);
+            }
+
+            List<Integer> genreIds = movieDetails.getGenreIds();
+            if (genreIds != null) {
+                for (Integer genreId : genreIds) {
+                    mGenreIds[genreIdOffset++] = genreId;
+                }
+                flags |= FLAG_HAS_GENRE_IDS;
+            }
+
+            mFlags[row] = (byte) flags;
+
+            mOriginalTitles[row] = movieDetails.getOriginalTitle();
+            mOriginalLanguages[row] = sStringPool.get(movieDetails.getOriginalLanguage());
+            mOverviews[row] = movieDetails.getOverview();
+            mReleaseDates[row] = sStringPool.get(movieDetails.getReleaseDate());
+            mReleaseEpochDays[row] = DateUtils.parseEpochDay(mReleaseDates[row]);
+            mBackdropPaths[row] = movieDetails.getBackdropPath();
+        }
+        mGenreIdOffsets[size] = genreIdOffset;
+    }
+
+    /**
+     * Returns the number of rows (movies).
+     *
+     * @return The number of rows.
+     */
+    int size() {
+        return mIds.length;
+    }
+
+    /**
+     * Returns the movie id in the given row.
+     *
+     * @param row The row (0 <= row < size()).
+     * @return The movie id.
+     */
+    long getId(int row) {
+        return mIds[row];
+    }
+
+    /**
+     * Returns the poster path in the given row.
+     *
+     * @param row The row (0 <= row < size()).
+     * @return The poster path (normalized) or null.
+     */
+    String getPosterPath(int row) {
+        return mPosterPaths[row];
+    }
+
+    /**
+     * Returns a read-only view of the movie details in the given row.
+     *
+     * @param row The row (0 <= row < size()).
+     * @return The view.
+     */
+    ReadableMovieListingMovieDetails getRow(int row) {
+        Object lazyRow = mLazyRows[row];
+        if (lazyRow instanceof Row) return (Row) lazyRow;
+        return new Row(this, row);
+    }
+
+    private boolean hasFlag(int row, int flag) {
+        return (mFlags[row] & flag) != 0;
+    }
+
+    /**
+     * Returns the decoded row of the lazy movie details in the given row. The remaining fields are
+     * decoded into a new column store with one (fully decoded) row on the first call.
+     *
+     * Reading a decoded row without holding the lock is safe: Row and the column store only have
+     * final fields, so a Row that is visible is also completely initialized.
+     */
+    private Row getDecodedRow(int row) {
+        Object lazyRow = mLazyRows[row];
+        if (lazyRow instanceof Row) return (Row) lazyRow;
+
+        synchronized (this) {
+            lazyRow = mLazyRows[row];
+            if (lazyRow instanceof Row) return (Row) lazyRow;
+
+            MovieListingMovieDetails movieDetails =
+                    LazyMovieListingMovieDetails.decodeRemainingFields((byte[]) lazyRow);
+            movieDetails.setId(mIds[row]);
+            movieDetails.setTitle(mTitles[row]);
+            movieDetails.setPosterPath(mPosterPaths[row]);
+
+            Row decodedRow = new Row(new MovieListingMovieDetailsColumns(
+                    Collections.singletonList(movieDetails)), 0);
+            mLazyRows[row] = decodedRow;
+            return decodedRow;
+        }
+    }
+
+    /**
+     * Immutable flyweight view of one row of a column store. For rows of lazy movie details, the
+     * getters of the remaining fields read from the decoded row of the column store.
+     */
+    private static class Row extends ReadableMovieListingMovieDetails {
+
+        private final MovieListingMovieDetailsColumns mColumns;
+        private final int mRow;
+
+        private Row(MovieListingMovieDetailsColumns columns, int row) {
+            mColumns = columns;
+            mRow = row;
+        }
+
+        /**
+         * Returns the view with all fields of the row decoded (this view unless the row is lazy).
+         */
+        private Row decoded() {
+            return mColumns.mLazyRows[mRow] == null ? this : mColumns.getDecodedRow(mRow);
+        }
+
+        @Override
+        public String getPosterPath() {
+            return mColumns.mPosterPaths[mRow];
+        }
+
+        @Override
+        public Boolean getAdult() {
+            Row row = decoded();
+            if (!row.mColumns.hasFlag(row.mRow, FLAG_HAS_ADULT)) return null;
+            return row.mColumns.hasFlag(row.mRow, FLAG_ADULT);
+        }
+
+        @Override
+        public String getOverview() {
+            Row row = decoded();
+            return row.mColumns.mOverviews[row.mRow];
+        }
+
+        @Override
+        public String getReleaseDate() {
+            Row row = decoded();
+            return row.mColumns.mReleaseDates[row.mRow];
+        }
+
+        @Override
+        public int getReleaseEpochDay() {
+            Row row = decoded();
+            return row.mColumns.mReleaseEpochDays[row.mRow];
+        }
+
+        @Override
+        public List<Integer> getGenreIds() {
+            Row row = decoded();
+            if (!row.mColumns.hasFlag(row.mRow, FLAG_HAS_GENRE_IDS)) return null;
+
+            int from = row.mColumns.mGenreIdOffsets[row.mRow];
+            int to = row.mColumns.mGenreIdOffsets[row.mRow + 1];
+            List<Integer> genreIds = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                genreIds.add(row.mColumns.mGenreIds[i]);
+            }
+            return genreIds;
+        }
+
+        @Override
+        public Long getId() {
+            return mColumns.mIds[mRow];
+        }
+
+        @Override
+        public String getOriginalTitle() {
+            Row row = decoded();
+            return row.mColumns.mOriginalTitles[row.mRow];
+        }
+
+        @Override
+        public String getOriginalLanguage() {
+            Row row = decoded();
+            return row.mColumns.mOriginalLanguages[row.mRow];
+        }
+
+        @Override
+        public String getTitle() {
+            return mColumns.mTitles[mRow];
+        }
+
+        @Override
+        public String getBackdropPath() {
+            Row row = decoded();
+            return row.mColumns.mBackdropPaths[row.mRow];
+        }
+
+        @Override
+        public Double getPopularity() {
+            Row row = decoded();
+            if (!row.mColumns.hasFlag(row.mRow, FLAG_HAS_POPULARITY)) return null;
+            return row.mColumns.mPopularities[row.mRow];
+        }
+
+        @Override
+        public Integer getVoteCount() {
+            Row row = decoded();
+            if (!row.mColumns.hasFlag(row.mRow, FLAG_HAS_VOTE_COUNT)) return null;
+            return row.mColumns.mVoteCounts[row.mRow];
+        }
+
+        @Override
+        public Boolean getVideo() {
+            Row row = decoded();
+            if (!row.mColumns.hasFlag(row.mRow, FLAG_HAS_VIDEO)) return null;
+            return row.mColumns.hasFlag(row.mRow, FLAG_VIDEO);
+        }
+
+        @Override
+        public Double getVoteAverage() {
+            Row row = decoded();
+            if (!row.mColumns.hasFlag(row.mRow, FLAG_HAS_VOTE_AVERAGE)) return null;
+            return row.mColumns.mVoteAverages[row.mRow];
+        }
+
+    }
+
+}
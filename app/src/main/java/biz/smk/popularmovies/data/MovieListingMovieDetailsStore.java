@@ -4,19 +4,64 @@
 
 package biz.smk.popularmovies.data;
 
-import android.annotation.SuppressLint;
-
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+import biz.smk.popularmovies.tmdbapi.responseobjects.MovieDetails;
 import biz.smk.popularmovies.tmdbapi.responseobjects.MovieListingMovieDetails;
+import biz.smk.popularmovies.tmdbapi.responseobjects.ReadableMovieListingMovieDetails;
+import rx.Single;
+import rx.functions.Func1;
 
 /**
  * Provides static methods for storing and retrieving movie details from movie listings.
+ *
+ * The movie details are kept in compact column stores (MovieListingMovieDetailsColumns, one per
+ * added list of movies); lookups return lightweight views of the columns.
+ *
+ * The store is backed by LongObjectMaps (no boxed keys, no node objects) and striped: movie ids
+ * are distributed over STRIPE_COUNT maps. Lookups (on the UI thread) are lock-free: the stripes
+ * are never modified once published, so a lookup reads the current map of its stripe from an
+ * AtomicReferenceArray and never waits for a writer. Writers (io threads adding listing pages)
+ * are serialized on the class lock, which also guards the entry count; they copy the stripes
+ * that they change and publish the copies. There are many small stripes, so a page of movies
+ * only copies a small part of the store.
+ *
+ * The store holds at most MAX_ENTRIES movies. Every details lookup stamps the entry with a value
+ * of an access counter (poster path lookups for prefetching do not); when a write exceeds the
+ * limit, the least recently used entries are evicted down to TRIM_TO_ENTRIES. Both limits are
+ * above the number of movie IDs that the page caches of the listings can hold, so the details of
+ * movies on cached pages are rarely evicted. Evicted movies of a listing are reloaded with their
+ * listing page (MovieListing.getMovieDetails()); single movies can be fetched with
+ * getMovieDetailsAsync().
  */
 public class MovieListingMovieDetailsStore {
 
-    @SuppressLint("UseSparseArrays")
-    private static HashMap<Long, MovieListingMovieDetails> mStore = new HashMap<>();
+    private static final int MAX_ENTRIES = MovieListing.MAX_CACHED_MOVIE_IDS + 500;
+    private static final int TRIM_TO_ENTRIES = MovieListing.MAX_CACHED_MOVIE_IDS + 300;
+
+    // A page of 20 movies changes about 20 of the 256 stripes (copying less than a tenth of the
+    // store), while the empty stripes take only a few kB.
+    private static final int STRIPE_BITS = 8;
+    private static final int STRIPE_COUNT = 1 << STRIPE_BITS;
+
+    private static final AtomicLong sAccessClock = new AtomicLong();
+
+    // Published stripes - replaced, never modified (writers hold the class lock).
+    private static final AtomicReferenceArray<LongObjectMap<Entry>> sStripes =
+            new AtomicReferenceArray<>(STRIPE_COUNT);
+
+    // Number of entries in all stripes (guarded by the class lock).
+    private static int sSize;
+
+    static {
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            sStripes.set(i, new LongObjectMap<Entry>());
+        }
+    }
 
     /**
      * Add movie details to the store. Uses the id field of the given movie details. If an entry
@@ -24,9 +69,43 @@ public class MovieListingMovieDetailsStore {
      *
      * @param movieDetails The movie details to add.
      */
-    static synchronized void addMovieDetails(MovieListingMovieDetails movieDetails) {
-        Long movieId = movieDetails.getId();
-        mStore.put(movieId, movieDetails);
+    static void addMovieDetails(MovieListingMovieDetails movieDetails) {
+        addMovieDetails(Collections.singletonList(movieDetails));
+    }
+
+    /**
+     * Add a list of movie details to the store (see addMovieDetails(MovieListingMovieDetails)).
+     *
+     * @param movieDetailsList The movie details to add.
+     */
+    static void addMovieDetails(List<MovieListingMovieDetails> movieDetailsList) {
+        MovieListingMovieDetailsColumns columns =
+                new MovieListingMovieDetailsColumns(movieDetailsList);
+
+        synchronized (MovieListingMovieDetailsStore.class) {
+            // Copies of the stripes changed by this write, published after all rows are added.
+            LongObjectMap<LongObjectMap<Entry>> changedStripes = new LongObjectMap<>();
+
+            for (int row = 0; row < columns.size(); row++) {
+                long movieId = columns.getId(row);
+                Entry entry = new Entry(columns, row, sAccessClock.incrementAndGet());
+
+                int stripeIndex = getStripeIndex(movieId);
+                LongObjectMap<Entry> stripe = changedStripes.get(stripeIndex);
+                if (stripe == null) {
+                    stripe = sStripes.get(stripeIndex).copy();
+                    changedStripes.put(stripeIndex, stripe);
+                }
+
+                if (stripe.put(movieId, entry) == null) sSize++;
+            }
+
+            publish(changedStripes);
+
+            if (sSize > MAX_ENTRIES) {
+                evictLeastRecentlyUsed();
+            }
+        }
     }
 
     /**
@@ -36,9 +115,9 @@ public class MovieListingMovieDetailsStore {
      * @return The movie details.
      * @throws IllegalArgumentException If no entry with the given id exists.
      */
-    public static synchronized MovieListingMovieDetails getMovieDetails(long movieId)
+    public static ReadableMovieListingMovieDetails getMovieDetails(long movieId)
             throws IllegalArgumentException {
-        MovieListingMovieDetails movieDetails = mStore.get(movieId);
+        ReadableMovieListingMovieDetails movieDetails = peekMovieDetails(movieId);
 
         if (movieDetails == null) {
             throw new IllegalArgumentException("Unknown movieId: " + movieId);
@@ -47,4 +126,135 @@ public class MovieListingMovieDetailsStore {
         return movieDetails;
     }
 
+    /**
+     * Returns the movie details for the given movie id if they are in the store.
+     *
+     * @param movieId The movie id.
+     * @return The movie details or null if no entry with the given id exists.
+     */
+    public static ReadableMovieListingMovieDetails peekMovieDetails(long movieId) {
+        Entry entry = sStripes.get(getStripeIndex(movieId)).get(movieId);
+        if (entry == null) return null;
+
+        entry.accessTime = sAccessClock.incrementAndGet();
+        return entry.columns.getRow(entry.row);
+    }
+
+    /**
+     * Returns the poster path of the given movie if it is in the store. Unlike peekMovieDetails(),
+     * this neither creates a view nor counts as an access for the eviction order, so that
+     * prefetching posters ahead of the scroll position does not keep movies in the store.
+     *
+     * @param movieId The movie id.
+     * @return The poster path or null if no entry with the given id exists (or it has no poster).
+     */
+    public static String peekPosterPath(long movieId) {
+        Entry entry = sStripes.get(getStripeIndex(movieId)).get(movieId);
+        return entry != null ? entry.columns.getPosterPath(entry.row) : null;
+    }
+
+    /**
+     * Returns a Single that resolves to the movie details for the given movie id. If the movie is
+     * not in the store (e.g. it has been evicted, or the process has been restarted), its details
+     * are fetched from the API (movie/{id}) and added to the store.
+     *
+     * @param movieId The movie id.
+     * @return Single that resolves to the movie details.
+     */
+    public static Single<ReadableMovieListingMovieDetails> getMovieDetailsAsync(long movieId) {
+        ReadableMovieListingMovieDetails movieDetails = peekMovieDetails(movieId);
+        if (movieDetails != null) return Single.just(movieDetails);
+
+        return MovieExtras.getDetails(movieId)
+                .map(new Func1<MovieDetails, ReadableMovieListingMovieDetails>() {
+                    @Override
+                    public ReadableMovieListingMovieDetails call(MovieDetails movieDetails) {
+                        MovieListingMovieDetails movieListingMovieDetails =
+                                movieDetails.toMovieListingMovieDetails();
+                        addMovieDetails(movieListingMovieDetails);
+                        return movieListingMovieDetails;
+                    }
+                });
+    }
+
+    /**
+     * Removes the least recently used entries until the store holds TRIM_TO_ENTRIES entries (must
+     * hold the class lock).
+     */
+    private static void evictLeastRecentlyUsed() {
+        long[] accessTimes = new long[sSize];
+        int count = 0;
+
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            LongObjectMap<Entry> stripe = sStripes.get(i);
+            for (int slot = 0; slot < stripe.capacity(); slot++) {
+                Entry entry = stripe.valueAt(slot);
+                if (entry != null) accessTimes[count++] = entry.accessTime;
+            }
+        }
+
+        Arrays.sort(accessTimes);
+        long evictUpTo = accessTimes[sSize - TRIM_TO_ENTRIES - 1];
+        long[] evictedKeys = new long[sSize];
+        LongObjectMap<LongObjectMap<Entry>> changedStripes = new LongObjectMap<>();
+
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            LongObjectMap<Entry> stripe = sStripes.get(i);
+
+            // Collect the keys first - removing entries moves other entries between slots.
+            int evictedCount = 0;
+            for (int slot = 0; slot < stripe.capacity(); slot++) {
+                Entry entry = stripe.valueAt(slot);
+                if (entry != null && entry.accessTime <= evictUpTo) {
+                    evictedKeys[evictedCount++] = stripe.keyAt(slot);
+                }
+            }
+            if (evictedCount == 0) continue;
+
+            stripe = stripe.copy();
+            for (int j = 0; j < evictedCount; j++) {
+                stripe.remove(evictedKeys[j]);
+            }
+            changedStripes.put(i, stripe);
+            sSize -= evictedCount;
+        }
+
+        publish(changedStripes);
+    }
+
+    /**
+     * Replaces the published stripes with the given changed copies (must hold the class lock).
+     *
+     * @param changedStripes The changed stripes by stripe index.
+     */
+    private static void publish(LongObjectMap<LongObjectMap<Entry>> changedStripes) {
+        for (int slot = 0; slot < changedStripes.capacity(); slot++) {
+            LongObjectMap<Entry> stripe = changedStripes.valueAt(slot);
+            if (stripe != null) sStripes.set((int) changedStripes.keyAt(slot), stripe);
+        }
+    }
+
+    private static int getStripeIndex(long movieId) {
+        // Use the high bits of the hash: LongObjectMap uses the low bits for its slots.
+        return (int) ((movieId * 0x9E3779B97F4A7C15L) >>> (64 - STRIPE_BITS));
+    }
+
+    /**
+     * Store entry: row of a column store with the time stamp of the last access. A column store is
+     * garbage collected when all of its rows have been evicted or replaced.
+     */
+    private static class Entry {
+
+        private final MovieListingMovieDetailsColumns columns;
+        private final int row;
+        private volatile long accessTime;
+
+        private Entry(MovieListingMovieDetailsColumns columns, int row, long accessTime) {
+            this.columns = columns;
+            this.row = row;
+            this.accessTime = accessTime;
+        }
+
+    }
+
 }
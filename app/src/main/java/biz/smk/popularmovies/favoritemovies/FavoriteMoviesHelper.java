@@ -16,7 +16,9 @@ import com.google.gson.Gson;
 import java.util.ArrayList;
 import java.util.List;
 
+import biz.smk.popularmovies.tmdbapi.TmdbGson;
 import biz.smk.popularmovies.tmdbapi.responseobjects.MovieListingMovieDetails;
+import biz.smk.popularmovies.tmdbapi.responseobjects.ReadableMovieListingMovieDetails;
 
 /**
  * Helper functions for favorite movies.
@@ -29,13 +31,13 @@ public class FavoriteMoviesHelper {
      * @param details The movie details of the movie to add.
      * @param queryHandler The query handler for the insert (onInsertCompleted will be called).
      */
-    public static void addFavoriteMovie(final MovieListingMovieDetails details,
-                                                 final AsyncQueryHandler queryHandler) {
+    public static void addFavoriteMovie(final ReadableMovieListingMovieDetails details,
+                                        final AsyncQueryHandler queryHandler) {
         new AsyncTask<Void, Void, String>() {
             @Override
             protected String doInBackground(Void... params) {
                 try {
-                    return new Gson().toJson(details, MovieListingMovieDetails.class);
+                    return TmdbGson.get().toJson(details, ReadableMovieListingMovieDetails.class);
                 } catch (Exception e) {
                     e.printStackTrace();
                     return null;
@@ -78,12 +80,12 @@ public class FavoriteMoviesHelper {
                     @Override
                     protected List<MovieListingMovieDetails> doInBackground(Void... params) {
                         List<MovieListingMovieDetails> movieList = new ArrayList<>();
+                        Gson gson = TmdbGson.get();
 
                         while (cursor.moveToNext()) {
                             try {
                                 String json = cursor.getString(0);
-                                movieList.add(
-                                        new Gson().fromJson(json, MovieListingMovieDetails.class));
+                                movieList.add(gson.fromJson(json, MovieListingMovieDetails.class));
                             } catch (Exception e) {
                                 e.printStackTrace();
                             }
@@ -0,0 +1,26 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.listingcache;
+
+import android.provider.BaseColumns;
+
+/**
+ * Database contract for the persistent movie listing cache.
+ */
+@SuppressWarnings("WeakerAccess")
+public class ListingCacheContract {
+
+    public static final class ListingPageEntry implements BaseColumns {
+
+        public static final String TABLE_NAME = "listingPages";
+
+        public static final String COLUMN_LISTING_TYPE = "listingType";
+        public static final String COLUMN_PAGE_NR = "pageNr";
+        public static final String COLUMN_PAGE = "page";
+        public static final String COLUMN_FETCH_TIME = "fetchTime";
+
+    }
+
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.listingcache;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.concurrent.Callable;
+
+import biz.smk.popularmovies.Application;
+import biz.smk.popularmovies.tmdbapi.TmdbGson;
+import biz.smk.popularmovies.tmdbapi.responseobjects.MovieListingPage;
+import rx.Scheduler;
+import rx.Single;
+import rx.functions.Action0;
+import rx.schedulers.Schedulers;
+
+/**
+ * Helper functions for the persistent movie listing cache. The cache keeps the first pages of the
+ * TMDb movie listings on disk, so that the poster grid can be shown right after a cold start
+ * without waiting for the network.
+ *
+ * All database access happens on the RxJava io scheduler.
+ */
+public class ListingCacheHelper {
+
+    private static final String TAG = "ListingCacheHelper";
+
+    /**
+     * Only the first pages of a listing are persisted - they are the ones that are needed on start.
+     */
+    public static final int MAX_PERSISTED_PAGE_NR = 3;
+
+    private static SQLiteDatabase sDatabase;
+
+    /**
+     * Returns the listing cache database (opened on first use).
+     *
+     * @return The database.
+     */
+    private static synchronized SQLiteDatabase getDatabase() {
+        if (sDatabase == null) {
+            sDatabase = new ListingCacheOpenHelper(Application.getContext()).getWritableDatabase();
+        }
+        return sDatabase;
+    }
+
+    /**
+     * Returns a Single that reads the given page of the given listing from the database. The Single
+     * resolves to null if the page is not in the database (or can not be read).
+     *
+     * @param listingType The listing type (e.g. MovieListing.Type.POPULAR.toString()).
+     * @param pageNr The page number.
+     * @return Single that resolves to the cached page or null.
+     */
+    public static Single<CachedPage> getPage(final String listingType, final int pageNr) {
+        return Single.fromCallable(new Callable<CachedPage>() {
+            @Override
+            public CachedPage call() throws Exception {
+                return readPage(listingType, pageNr);
+            }
+        }).subscribeOn(Schedulers.io());
+    }
+
+    /**
+     * Writes the given page of the given listing to the database (in the background), replacing
+     * an older version of the page. Pages after MAX_PERSISTED_PAGE_NR are ignored.
+     *
+     * @param listingType The listing type (e.g. MovieListing.Type.POPULAR.toString()).
+     * @param pageNr The page number.
+     * @param page The page.
+     */
+    public static void putPage(final String listingType, final int pageNr,
+                               final MovieListingPage page) {
+        if (pageNr > MAX_PERSISTED_PAGE_NR) return;
+
+        final long fetchTime = System.currentTimeMillis();
+
+        final Scheduler.Worker worker = Schedulers.io().createWorker();
+        worker.schedule(new Action0() {
+            @Override
+            public void call() {
+                try {
+                    writePage(listingType, pageNr, page, fetchTime);
+                } finally {
+                    worker.unsubscribe();
+                }
+            }
+        });
+    }
+
+    private static CachedPage readPage(String listingType, int pageNr) {
+        Cursor cursor = null;
+
+        try {
+            cursor = getDatabase().query(
+                    ListingCacheContract.ListingPageEntry.TABLE_NAME,
+                    new String[] {
+                            ListingCacheContract.ListingPageEntry.COLUMN_PAGE,
+                            ListingCacheContract.ListingPageEntry.COLUMN_FETCH_TIME
+                    },
+                    ListingCacheContract.ListingPageEntry.COLUMN_LISTING_TYPE + " = ? AND " +
+                            ListingCacheContract.ListingPageEntry.COLUMN_PAGE_NR + " = ?",
+                    new String[] { listingType, String.valueOf(pageNr) },
+                    null,
+                    null,
+                    null);
+
+            if (!cursor.moveToFirst()) return null;
+
+            MovieListingPage page = TmdbGson.get().fromJson(cursor.getString(0),
+                    MovieListingPage.class);
+            return new CachedPage(page, cursor.getLong(1));
+        } catch (Exception e) {
+            Log.w(TAG, "Could not read page " + pageNr + " of " + listingType, e);
+            return null;
+        } finally {
+            if (cursor != null) cursor.close();
+        }
+    }
+
+    private static void writePage(String listingType, int pageNr, MovieListingPage page,
+                                  long fetchTime) {
+        try {
+            String json = TmdbGson.get().toJson(page, MovieListingPage.class);
+
+            ContentValues values = new ContentValues();
+            values.put(ListingCacheContract.ListingPageEntry.COLUMN_LISTING_TYPE, listingType);
+            values.put(ListingCacheContract.ListingPageEntry.COLUMN_PAGE_NR, pageNr);
+            values.put(ListingCacheContract.ListingPageEntry.COLUMN_PAGE, json);
+            values.put(ListingCacheContract.ListingPageEntry.COLUMN_FETCH_TIME, fetchTime);
+
+            getDatabase().insert(ListingCacheContract.ListingPageEntry.TABLE_NAME, null, values);
+        } catch (Exception e) {
+            Log.w(TAG, "Could not write page " + pageNr + " of " + listingType, e);
+        }
+    }
+
+    /**
+     * A listing page read from the database, together with the time when it was fetched from the
+     * API.
+     */
+    public static class CachedPage {
+
+        public final MovieListingPage page;
+        public final long fetchTime; // ms since epoch
+
+        CachedPage(MovieListingPage page, long fetchTime) {
+            this.page = page;
+            this.fetchTime = fetchTime;
+        }
+
+    }
+
+}
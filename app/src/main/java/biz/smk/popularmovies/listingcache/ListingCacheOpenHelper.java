@@ -0,0 +1,42 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.listingcache;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+/**
+ * Open helper for the listing cache DB.
+ */
+class ListingCacheOpenHelper extends SQLiteOpenHelper {
+
+    private static final String DB_NAME = "listing-cache.db";
+    private static final int DB_VERSION = 1;
+
+    ListingCacheOpenHelper(Context context) {
+        super(context, DB_NAME, null, DB_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        String sql = "CREATE TABLE " + ListingCacheContract.ListingPageEntry.TABLE_NAME + " (" +
+                ListingCacheContract.ListingPageEntry._ID + " INTEGER PRIMARY KEY, " +
+                ListingCacheContract.ListingPageEntry.COLUMN_LISTING_TYPE + " TEXT NOT NULL, " +
+                ListingCacheContract.ListingPageEntry.COLUMN_PAGE_NR + " INTEGER NOT NULL, " +
+                ListingCacheContract.ListingPageEntry.COLUMN_PAGE + " TEXT NOT NULL, " +
+                ListingCacheContract.ListingPageEntry.COLUMN_FETCH_TIME + " INTEGER NOT NULL, " +
+                "UNIQUE (" + ListingCacheContract.ListingPageEntry.COLUMN_LISTING_TYPE + ", " +
+                ListingCacheContract.ListingPageEntry.COLUMN_PAGE_NR + ") ON CONFLICT REPLACE);";
+
+        db.execSQL(sql);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (newVersion > 1) throw new IllegalStateException("database upgrade must be implemented");
+    }
+
+}
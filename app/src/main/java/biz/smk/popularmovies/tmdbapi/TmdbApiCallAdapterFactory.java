@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.tmdbapi;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.Retrofit;
+import retrofit2.adapter.rxjava.HttpException;
+import rx.Observable;
+import rx.Single;
+import rx.functions.Func1;
+
+/**
+ * Retrofit 2 call adapter factory that wraps the RxJava call adapter and adds a TMDb specific
+ * stage to the returned Singles: responses with status code 429 (Too Many Requests) are retried by
+ * resubscribing to the Single after the delay given in the Retry-After header. No thread is
+ * blocked while waiting for the retry. Retries pass through the rate limiter again (it is applied
+ * by a network interceptor of the OkHttp client, see TmdbApiClientFactory).
+ */
+class TmdbApiCallAdapterFactory extends CallAdapter.Factory {
+
+    /**
+     * When the API response indicates that there were too many requests (status code 429), the
+     * request will be retried up to MAX_RETRY_COUNT times, but only if the Retry-After header in
+     * the response is <= MAX_RETRY_AFTER (seconds).
+     */
+    private static final int MAX_RETRY_COUNT = 2;
+    private static final int MAX_RETRY_AFTER = 10;
+
+    /**
+     * Creates a new call adapter factory.
+     *
+     * @return The call adapter factory.
+     */
+    static TmdbApiCallAdapterFactory create() {
+        return new TmdbApiCallAdapterFactory();
+    }
+
+    private TmdbApiCallAdapterFactory() {}
+
+    /**
+     * Returns a call adapter for Singles that delegates to the next call adapter (the RxJava call
+     * adapter) and adds the retry stage to the Single returned from the delegate.
+     *
+     * @param returnType {@inheritDoc}
+     * @param annotations {@inheritDoc}
+     * @param retrofit {@inheritDoc}
+     * @return {@inheritDoc}
+     */
+    @Override
+    public CallAdapter<?> get(Type returnType, Annotation[] annotations, Retrofit retrofit) {
+        if (getRawType(returnType) != Single.class) return null;
+
+        final CallAdapter<?> delegate = retrofit.nextCallAdapter(this, returnType, annotations);
+
+        return new CallAdapter<Single<?>>() {
+            @Override
+            public Type responseType() {
+                return delegate.responseType();
+            }
+
+            @Override
+            public <R> Single<?> adapt(Call<R> call) {
+                Single<?> single = (Single<?>) delegate.adapt(call);
+                return single.retryWhen(new RetryOn429());
+            }
+        };
+    }
+
+    /**
+     * Notification handler for Single.retryWhen(). Resubscribes to the Single after the delay given
+     * in the Retry-After header as long as the retry count is not exceeded. The delay is scheduled
+     * with Observable.timer(), so no thread is parked while waiting.
+     */
+    private static class RetryOn429
+            implements Func1<Observable<? extends Throwable>, Observable<?>> {
+
+        @Override
+        public Observable<?> call(Observable<? extends Throwable> errors) {
+            // This method is called once per subscription, so the retry count is per subscription.
+            final int[] retryCount = { 0 };
+
+            return errors.flatMap(new Func1<Throwable, Observable<?>>() {
+                @Override
+                public Observable<?> call(Throwable throwable) {
+                    // No retry if the maximum retry count is exceeded.
+                    if (retryCount[0] > MAX_RETRY_COUNT) return Observable.error(throwable);
+
+                    // No retry if this is no 429 error or if the Retry-After value is missing or
+                    // too high.
+                    int retryAfter = getRetryAfter(throwable);
+                    if (retryAfter == -1 || retryAfter > MAX_RETRY_AFTER) {
+                        return Observable.error(throwable);
+                    }
+
+                    retryCount[0]++;
+                    return Observable.timer(retryAfter, TimeUnit.SECONDS);
+                }
+            });
+        }
+
+        /**
+         * Extracts the value of the Retry-After header from a 429 error.
+         *
+         * @param throwable The error from which to extract the value.
+         * @return The Retry-After value or -1 if this is no 429 error or on failure.
+         */
+        private int getRetryAfter(Throwable throwable) {
+            if (!(throwable instanceof HttpException)) return -1;
+
+            HttpException httpException = (HttpException) throwable;
+            if (httpException.code() != 429) return -1;
+
+            int retryAfter;
+
+            try {
+                String header = httpException.response().headers().get("Retry-After");
+                retryAfter = Integer.parseInt(header);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+
+            if (retryAfter < 0) return -1;
+            return retryAfter;
+        }
+
+    }
+
+}
@@ -5,6 +5,7 @@
 package biz.smk.popularmovies.tmdbapi;
 
 import biz.smk.popularmovies.tmdbapi.responseobjects.Configuration;
+import biz.smk.popularmovies.tmdbapi.responseobjects.MovieDetails;
 import biz.smk.popularmovies.tmdbapi.responseobjects.MovieListingPage;
 import biz.smk.popularmovies.tmdbapi.responseobjects.MovieReviews;
 import biz.smk.popularmovies.tmdbapi.responseobjects.MovieVideos;
@@ -30,6 +31,13 @@ public interface TmdbApiClient {
     @GET("movie/popular?api_key=")
     Single<MovieListingPage> getPopularMovies(@Query("page") int pageNr);
 
+    /**
+     * Returns the full movie details together with the videos and reviews of the movie (in one
+     * request).
+     */
+    @GET("movie/{id}?api_key=&append_to_response=videos,reviews")
+    Single<MovieDetails> getMovieDetails(@Path("id") long movieId);
+
     @GET("movie/{id}/videos?api_key=")
     Single<MovieVideos> getMovieVideos(@Path("id") long movieId);
 
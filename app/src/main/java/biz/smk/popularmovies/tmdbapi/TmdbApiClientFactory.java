@@ -5,13 +5,21 @@
 package biz.smk.popularmovies.tmdbapi;
 
 import android.content.Context;
-import android.os.SystemClock;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 import biz.smk.popularmovies.Application;
 import biz.smk.popularmovies.BuildConfig;
 import biz.smk.popularmovies.R;
+import biz.smk.popularmovies.utilities.HttpClients;
+import okhttp3.Cache;
+import okhttp3.CacheControl;
 import okhttp3.HttpUrl;
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
@@ -24,7 +32,8 @@ import retrofit2.converter.gson.GsonConverterFactory;
 import rx.schedulers.Schedulers;
 
 /**
- * Creates new TMDb API clients with Retrofit 2.
+ * Creates the TMDb API clients with Retrofit 2. The clients are created once and shared by the
+ * whole app, so all API requests use the same OkHttp connection pool and Gson converter.
  */
 public class TmdbApiClientFactory {
 
@@ -33,16 +42,36 @@ public class TmdbApiClientFactory {
     private static final String API_BASE_URL = "https://api.themoviedb.org/3/";
     private static final String API_KEY_PARAM = "api_key";
 
+    private static final String HTTP_CACHE_DIR_NAME = "tmdb-api-cache";
+    private static final long HTTP_CACHE_MAX_SIZE = 10 * 1024 * 1024; // 10 MB
+
     /**
-     * When the API response indicates that there were too many requests (status code 429), the
-     * request will be retried up to MAX_RETRY_COUNT times, but only if the Retry-After header in
-     * the response is <= MAX_RETRY_AFTER (seconds).
+     * Freshness policies (max-age in seconds) for the cached API responses. TMDb's own cache
+     * headers are short, so they are replaced by these values. Endpoints that do not match any of
+     * the patterns keep the headers sent by TMDb.
      */
-    private static final int MAX_RETRY_COUNT = 2;
-    private static final int MAX_RETRY_AFTER = 10;
+    private static final Pattern LISTING_PATH_PATTERN =
+            Pattern.compile("^/3/movie/(top_rated|popular)$");
+    private static final Pattern MOVIE_PATH_PATTERN =
+            Pattern.compile("^/3/movie/[0-9]+(/(videos|reviews))?$");
+    private static final int LISTING_MAX_AGE = 60 * 60; // 1 hour
+    private static final int MOVIE_MAX_AGE = 24 * 60 * 60; // 1 day
+
+    /**
+     * Maximum age (in seconds) of expired cache entries that are still served when the network is
+     * not available or the API fails or throttles the request (stale-if-error).
+     */
+    private static final int MAX_STALE_IF_ERROR = 7 * 24 * 60 * 60; // 7 days
+
+    private static final GsonConverterFactory GSON_CONVERTER_FACTORY =
+            GsonConverterFactory.create(TmdbGson.get());
 
     private static String sApiKey;
 
+    private static OkHttpClient sApiHttpClient;
+    private static Map<TmdbApiRateLimiter.Priority, TmdbApiClient> sApiClients =
+            new EnumMap<>(TmdbApiRateLimiter.Priority.class);
+
     private static String getApiKey() {
         if (sApiKey == null) {
             Context appContext = Application.getContext();
@@ -52,15 +81,74 @@ public class TmdbApiClientFactory {
     }
 
     /**
-     * Returns an TMDb Retrofit API client that executes requests on RxJava Schedulers.io() threads
-     * and handles 429 (Too Many Requests) API responses with retries.
+     * Returns the TMDb Retrofit API client for requests with normal priority.
+     *
+     * @return TMDb API client.
+     * @see #getApiClient(TmdbApiRateLimiter.Priority)
+     */
+    public static TmdbApiClient getApiClient() {
+        return getApiClient(TmdbApiRateLimiter.Priority.NORMAL);
+    }
+
+    /**
+     * Returns the TMDb Retrofit API client that executes requests on RxJava Schedulers.io() threads
+     * and handles 429 (Too Many Requests) API responses with non-blocking retries. All requests of
+     * the client that go to the network pass through the shared TmdbApiRateLimiter in the lane of
+     * the given priority (requests answered by the HTTP cache do not).
      *
+     * There is one client per priority. The clients are created on the first call and shared
+     * afterwards; their OkHttp clients are derived from the same API client and only differ in the
+     * priority of the rate limiter interceptor.
+     *
+     * @param priority The rate limiter priority lane for the requests of the client.
      * @return TMDb API client.
      */
-    public static TmdbApiClient createApiClient() {
-        OkHttpClient.Builder clientBuilder = new OkHttpClient.Builder();
+    public static synchronized TmdbApiClient getApiClient(TmdbApiRateLimiter.Priority priority) {
+        TmdbApiClient apiClient = sApiClients.get(priority);
+
+        if (apiClient == null) {
+            if (sApiHttpClient == null) {
+                sApiHttpClient = createApiHttpClient();
+            }
+
+            RxJavaCallAdapterFactory callAdapterFactory =
+                    RxJavaCallAdapterFactory.createWithScheduler(Schedulers.io());
+
+            OkHttpClient httpClient = sApiHttpClient.newBuilder()
+                    .addNetworkInterceptor(getRateLimiterNetworkInterceptor(priority))
+                    .build();
+
+            Retrofit retrofit = new Retrofit.Builder()
+                    .baseUrl(API_BASE_URL)
+                    .client(httpClient)
+                    .addConverterFactory(GSON_CONVERTER_FACTORY)
+                    .addCallAdapterFactory(TmdbApiCallAdapterFactory.create())
+                    .addCallAdapterFactory(callAdapterFactory)
+                    .build();
+
+            apiClient = retrofit.create(TmdbApiClient.class);
+            sApiClients.put(priority, apiClient);
+        }
+
+        return apiClient;
+    }
+
+    /**
+     * Derives the OkHttp client for API requests from the shared base client. The derived client
+     * shares the connection pool and dispatcher of the base client and has its own disk cache for
+     * API responses.
+     *
+     * @return OkHttp client for API requests.
+     */
+    private static OkHttpClient createApiHttpClient() {
+        Context appContext = Application.getContext();
+        File cacheDir = new File(appContext.getCacheDir(), HTTP_CACHE_DIR_NAME);
+
+        OkHttpClient.Builder clientBuilder = HttpClients.getBaseClient().newBuilder();
+        clientBuilder.cache(new Cache(cacheDir, HTTP_CACHE_MAX_SIZE));
         clientBuilder.addInterceptor(getApiKeyInterceptor());
-        clientBuilder.addInterceptor(getRetryOn429Interceptor());
+        clientBuilder.addInterceptor(getStaleIfErrorInterceptor());
+        clientBuilder.addNetworkInterceptor(getCacheControlNetworkInterceptor());
 
         if (BuildConfig.DEBUG && ENABLE_DEBUG_OUTPUT) {
             HttpLoggingInterceptor loggingInterceptor = new HttpLoggingInterceptor();
@@ -68,19 +156,7 @@ public class TmdbApiClientFactory {
             clientBuilder.addInterceptor(loggingInterceptor);
         }
 
-        OkHttpClient client = clientBuilder.build();
-
-        RxJavaCallAdapterFactory callAdapterFactory =
-                RxJavaCallAdapterFactory.createWithScheduler(Schedulers.io());
-
-        Retrofit retrofit = new Retrofit.Builder()
-                .baseUrl(API_BASE_URL)
-                .client(client)
-                .addConverterFactory(GsonConverterFactory.create())
-                .addCallAdapterFactory(callAdapterFactory)
-                .build();
-
-        return retrofit.create(TmdbApiClient.class);
+        return clientBuilder.build();
     }
 
     /**
@@ -112,65 +188,135 @@ public class TmdbApiClientFactory {
     }
 
     /**
-     * Returns an OkHttp 3 interceptor that handles 429 (Too Many Requests) API responses with a
-     * limited number of retries.
+     * Returns an OkHttp 3 application interceptor that serves an expired cache entry (not older
+     * than MAX_STALE_IF_ERROR) if the request fails, if the server fails (5xx) or if the request is
+     * throttled (429). If there is no such cache entry, the original result is passed on.
+     *
+     * This interceptor must be added after the API key interceptor, because the cache key is the
+     * full request URL (including the API key).
      *
-     * @return Status code 429 handling interceptor.
+     * @return Stale-if-error interceptor.
      */
-    private static Interceptor getRetryOn429Interceptor() {
+    private static Interceptor getStaleIfErrorInterceptor() {
         return new Interceptor() {
             @Override
             public Response intercept(Chain chain) throws IOException {
-                return process(chain, 0);
+                Request request = chain.request();
+                Response response;
+
+                try {
+                    response = chain.proceed(request);
+                } catch (IOException e) {
+                    Response staleResponse = getStaleResponse(chain, request);
+                    if (staleResponse != null) return staleResponse;
+                    throw e;
+                }
+
+                if (response.code() == 429 || response.code() >= 500) {
+                    Response staleResponse = getStaleResponse(chain, request);
+                    if (staleResponse != null) {
+                        response.body().close();
+                        return staleResponse;
+                    }
+                }
+
+                return response;
             }
 
             /**
-             * Recursively requests until no 429 is returned or the retry count is reached or the
-             * Retry-After value is missing or too high.
+             * Requests the given request from the cache only, accepting expired entries.
              *
              * @param chain Interceptor chain.
-             * @param retryCount Number of retries so far (for recursion).
-             * @return Response of the retry.
+             * @param request The original request.
+             * @return The cached response or null if there is no adequate cache entry.
              * @throws IOException If chain.proceed fails.
              */
-            private Response process(Chain chain, int retryCount) throws IOException {
-                Response response = chain.proceed(chain.request());
+            private Response getStaleResponse(Chain chain, Request request) throws IOException {
+                if (!request.method().equals("GET")) return null;
+
+                CacheControl cacheControl = new CacheControl.Builder()
+                        .onlyIfCached()
+                        .maxStale(MAX_STALE_IF_ERROR, TimeUnit.SECONDS)
+                        .build();
 
-                // No processing if the status code is != 429
-                if (response.code() != 429) return response;
+                Response response = chain.proceed(request.newBuilder()
+                        .cacheControl(cacheControl)
+                        .build());
+
+                // OkHttp returns 504 (Unsatisfiable Request) if there is no cache entry.
+                if (!response.isSuccessful()) {
+                    response.body().close();
+                    return null;
+                }
+
+                return response;
+            }
+        };
+    }
+
+    /**
+     * Returns an OkHttp 3 network interceptor that waits for the TmdbApiRateLimiter before the
+     * request is sent. Network interceptors only run for requests that go to the network, so
+     * responses from the HTTP cache neither use up a token nor wait behind the rate limit.
+     *
+     * Waiting blocks the calling thread (a Schedulers.io() thread). If the thread is interrupted
+     * (the subscription is unsubscribed), the request leaves the queue and fails.
+     *
+     * @param priority The rate limiter priority lane for the requests.
+     * @return Rate limiter interceptor.
+     */
+    private static Interceptor getRateLimiterNetworkInterceptor(
+            final TmdbApiRateLimiter.Priority priority) {
+        return new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                try {
+                    TmdbApiRateLimiter.getInstance().acquire(priority);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the rate " +
+                            "limiter");
+                }
 
-                // No processing if the maximum retry count is exceeded.
-                if (retryCount > MAX_RETRY_COUNT) return response;
+                return chain.proceed(chain.request());
+            }
+        };
+    }
 
-                // No processing if the Retry-After value is missing or too high.
-                int retryAfter = getRetryAfter(response);
-                if (retryAfter == -1 || retryAfter > MAX_RETRY_AFTER) return response;
+    /**
+     * Returns an OkHttp 3 network interceptor that replaces the cache headers of successful API
+     * responses with the freshness policy of the requested endpoint.
+     *
+     * @return Cache control interceptor.
+     */
+    private static Interceptor getCacheControlNetworkInterceptor() {
+        return new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                Response response = chain.proceed(chain.request());
 
-                // Retrofit requests run in their own thread, so it is ok to sleep the thread here.
-                // It is the only solution when using an interceptor, because OkHttp 3
-                // interceptors work synchronously.
-                SystemClock.sleep(retryAfter * 1000);
+                int maxAge = getMaxAge(chain.request().url());
+                if (!response.isSuccessful() || maxAge == -1) return response;
 
-                return process(chain, retryCount + 1);
+                return response.newBuilder()
+                        .removeHeader("Pragma")
+                        .removeHeader("Expires")
+                        .header("Cache-Control", "public, max-age=" + maxAge)
+                        .build();
             }
 
             /**
-             * Extracts the value of the Retry-After header.
+             * Returns the max-age for the given API URL.
              *
-             * @param response The responsen from which to extract the value.
-             * @return The Retry-After value or -1 on failure.
+             * @param url The API URL.
+             * @return The max-age in seconds or -1 if there is no policy for the URL.
              */
-            private int getRetryAfter(Response response) {
-                int retryAfter;
-
-                try {
-                    retryAfter = Integer.parseInt(response.header("Retry-After"));
-                } catch (NumberFormatException e) {
-                    return -1;
-                }
+            private int getMaxAge(HttpUrl url) {
+                String path = url.encodedPath();
 
-                if (retryAfter < 0) return -1;
-                return retryAfter;
+                if (LISTING_PATH_PATTERN.matcher(path).matches()) return LISTING_MAX_AGE;
+                if (MOVIE_PATH_PATTERN.matcher(path).matches()) return MOVIE_MAX_AGE;
+                return -1;
             }
         };
     }
@@ -39,6 +39,12 @@ public class TmdbApiConfiguration {
      */
     public static final int NUM_LISTING_ENTRIES_PER_PAGE = 20;
 
+    /**
+     * Highest page number that the API serves for movie listings. Listings report larger
+     * total_pages / total_results values, but requests for later pages fail.
+     */
+    public static final int MAX_LISTING_PAGE_NR = 500;
+
     private static final String SHARED_PREFS_NAME = "tmdb_api_configuration_cache";
     private static final String SHARED_PREFS_IMAGES_BASE_URL_FIELD = "images_base_url";
     private static final String SHARED_PREFS_POSTER_SIZES_FIELD = "poster_sizes";
@@ -119,7 +125,7 @@ public class TmdbApiConfiguration {
         if (cachedConfiguration != null) {
             return Single.just(cachedConfiguration);
         } else {
-            TmdbApiClient api = TmdbApiClientFactory.createApiClient();
+            TmdbApiClient api = TmdbApiClientFactory.getApiClient();
 
             return api.getConfiguration().map(new Func1<Configuration, CachedConfiguration>() {
                 @Override
@@ -248,6 +254,11 @@ public class TmdbApiConfiguration {
          */
         public final Uri uri;
 
+        /**
+         * The base URI as string, without a trailing slash (poster paths are appended to this).
+         */
+        public final String uriString;
+
         /**
          * The width of the posters returned from this base URI.
          */
@@ -258,6 +269,9 @@ public class TmdbApiConfiguration {
                     .appendPath(sizePathElement)
                     .build();
 
+            String string = uri.toString();
+            uriString = string.endsWith("/") ? string.substring(0, string.length() - 1) : string;
+
             this.width = width;
         }
 
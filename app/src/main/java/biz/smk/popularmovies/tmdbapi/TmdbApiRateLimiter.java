@@ -0,0 +1,300 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.tmdbapi;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import rx.Scheduler;
+import rx.functions.Action0;
+import rx.schedulers.Schedulers;
+
+/**
+ * Client-side rate limiter for TMDb API requests. Requests are queued locally in one of several
+ * priority lanes and only sent when a token of the token bucket is available. The bucket is sized
+ * to the TMDb request limit (40 requests per 10 seconds - see
+ * https://developers.themoviedb.org/3/getting-started/request-rate-limiting), so requests wait in
+ * the queue instead of earning 429 responses.
+ *
+ * The limiter is applied by a network interceptor of the API clients (see TmdbApiClientFactory),
+ * so only requests that actually go to the network take a token - responses from the HTTP cache
+ * do not count against the limit. A waiting request blocks its (io) thread in acquire(); the
+ * queue is drained by a task that is scheduled for the time when the next token becomes
+ * available.
+ */
+public class TmdbApiRateLimiter {
+
+    private static final String TAG = "TmdbApiRateLimiter";
+
+    /**
+     * Priority lanes. Queued requests of a lane are only sent when all lanes with a higher priority
+     * (lower ordinal) are empty.
+     */
+    public enum Priority {
+
+        /**
+         * Requests for data that is currently visible (listing pages of the visible grid rows, the
+         * open movie details screen).
+         */
+        HIGH,
+
+        /**
+         * Other requests (e.g. the API configuration).
+         */
+        NORMAL,
+
+        /**
+         * Speculative requests for data that might be needed soon.
+         */
+        PREFETCH
+
+    }
+
+    private static final int BUCKET_CAPACITY = 40;
+    private static final long TOKEN_REFILL_INTERVAL = 250; // ms (= 40 tokens per 10 seconds)
+
+    private static TmdbApiRateLimiter sInstance;
+
+    private final Map<Priority, ArrayDeque<Ticket>> mQueues = new EnumMap<>(Priority.class);
+    private final Scheduler.Worker mDrainWorker = Schedulers.computation().createWorker();
+
+    private int mTokens = BUCKET_CAPACITY;
+    private long mLastRefillTime = SystemClock.elapsedRealtime();
+    private boolean mDrainScheduled = false;
+
+    private long mGrantedCount = 0;
+    private long mDelayedCount = 0;
+    private long mTotalWaitTime = 0;
+    private long mMaxWaitTime = 0;
+
+    /**
+     * Returns the rate limiter instance that is shared by all TMDb API requests.
+     *
+     * @return The rate limiter.
+     */
+    public static synchronized TmdbApiRateLimiter getInstance() {
+        if (sInstance == null) {
+            sInstance = new TmdbApiRateLimiter();
+        }
+        return sInstance;
+    }
+
+    private TmdbApiRateLimiter() {
+        for (Priority priority : Priority.values()) {
+            mQueues.put(priority, new ArrayDeque<Ticket>());
+        }
+    }
+
+    /**
+     * Waits until the rate limit allows sending a request. If the waiting thread is interrupted,
+     * the request is removed from the queue.
+     *
+     * @param priority The priority lane for the request.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    void acquire(Priority priority) throws InterruptedException {
+        final CountDownLatch granted = new CountDownLatch(1);
+        Ticket ticket = new Ticket(priority, new Action0() {
+            @Override
+            public void call() {
+                granted.countDown();
+            }
+        });
+
+        enqueueTicket(ticket);
+
+        try {
+            granted.await();
+        } catch (InterruptedException e) {
+            removeTicket(ticket);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of requests that are currently waiting in the given priority lane.
+     *
+     * @param priority The priority lane.
+     * @return The queue depth of the lane.
+     */
+    public synchronized int getQueueDepth(Priority priority) {
+        return mQueues.get(priority).size();
+    }
+
+    /**
+     * Returns the number of requests that are currently waiting in all lanes.
+     *
+     * @return The total queue depth.
+     */
+    public synchronized int getQueueDepth() {
+        int depth = 0;
+        for (ArrayDeque<Ticket> queue : mQueues.values()) {
+            depth += queue.size();
+        }
+        return depth;
+    }
+
+    /**
+     * Returns the number of requests that have been sent so far.
+     *
+     * @return The number of sent requests.
+     */
+    public synchronized long getGrantedCount() {
+        return mGrantedCount;
+    }
+
+    /**
+     * Returns the number of requests that had to wait for a token.
+     *
+     * @return The number of delayed requests.
+     */
+    public synchronized long getDelayedCount() {
+        return mDelayedCount;
+    }
+
+    /**
+     * Returns the summed up time (in ms) that sent requests spent waiting in the queue.
+     *
+     * @return Total wait time in ms.
+     */
+    public synchronized long getTotalWaitTime() {
+        return mTotalWaitTime;
+    }
+
+    /**
+     * Returns the longest time (in ms) that a sent request spent waiting in the queue.
+     *
+     * @return Maximum wait time in ms.
+     */
+    public synchronized long getMaxWaitTime() {
+        return mMaxWaitTime;
+    }
+
+    private synchronized void removeTicket(Ticket ticket) {
+        mQueues.get(ticket.priority).remove(ticket);
+    }
+
+    private void enqueueTicket(Ticket ticket) {
+        synchronized (this) {
+            mQueues.get(ticket.priority).add(ticket);
+        }
+
+        drainQueues();
+    }
+
+    /**
+     * Sends as many queued requests as there are tokens available (highest priority first). If
+     * requests remain in the queue, a drain task is scheduled for the time when the next token
+     * becomes available.
+     */
+    private void drainQueues() {
+        List<Ticket> grantedTickets = new ArrayList<>();
+
+        synchronized (this) {
+            refillTokens();
+
+            long now = SystemClock.elapsedRealtime();
+            Ticket ticket;
+
+            while (mTokens > 0 && (ticket = pollTicket()) != null) {
+                mTokens--;
+
+                long waitTime = now - ticket.enqueueTime;
+                mGrantedCount++;
+                mTotalWaitTime += waitTime;
+                if (waitTime > 0) mDelayedCount++;
+                if (waitTime > mMaxWaitTime) mMaxWaitTime = waitTime;
+
+                grantedTickets.add(ticket);
+            }
+
+            if (!mDrainScheduled && hasQueuedTickets()) {
+                mDrainScheduled = true;
+                long delay = mLastRefillTime + TOKEN_REFILL_INTERVAL - now;
+
+                Log.v(TAG, "Rate limit reached, " + getQueueDepth() + " requests queued");
+
+                mDrainWorker.schedule(new Action0() {
+                    @Override
+                    public void call() {
+                        synchronized (TmdbApiRateLimiter.this) {
+                            mDrainScheduled = false;
+                        }
+                        drainQueues();
+                    }
+                }, Math.max(delay, 0), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        // Release the waiting requests outside of the lock.
+        for (Ticket grantedTicket : grantedTickets) {
+            grantedTicket.onGranted.call();
+        }
+    }
+
+    /**
+     * Adds the tokens that have been generated since the last refill (must hold the lock).
+     */
+    private void refillTokens() {
+        long now = SystemClock.elapsedRealtime();
+        long newTokens = (now - mLastRefillTime) / TOKEN_REFILL_INTERVAL;
+
+        if (newTokens > 0) {
+            mTokens = (int) Math.min(BUCKET_CAPACITY, mTokens + newTokens);
+            mLastRefillTime += newTokens * TOKEN_REFILL_INTERVAL;
+        }
+
+        if (mTokens == BUCKET_CAPACITY) {
+            mLastRefillTime = now;
+        }
+    }
+
+    /**
+     * Removes and returns the first ticket of the highest priority lane that is not empty (must
+     * hold the lock).
+     *
+     * @return The next ticket or null if all lanes are empty.
+     */
+    private Ticket pollTicket() {
+        for (Priority priority : Priority.values()) {
+            Ticket ticket = mQueues.get(priority).poll();
+            if (ticket != null) return ticket;
+        }
+        return null;
+    }
+
+    private boolean hasQueuedTickets() {
+        for (ArrayDeque<Ticket> queue : mQueues.values()) {
+            if (!queue.isEmpty()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * A queued request.
+     */
+    private static class Ticket {
+
+        private final Priority priority;
+        private final Action0 onGranted;
+        private final long enqueueTime;
+
+        private Ticket(Priority priority, Action0 onGranted) {
+            this.priority = priority;
+            this.onGranted = onGranted;
+            this.enqueueTime = SystemClock.elapsedRealtime();
+        }
+
+    }
+
+}
@@ -0,0 +1,30 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.tmdbapi;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Provides the app-wide Gson instance for (de)serializing TMDb API response objects. It is used
+ * for API responses as well as for the movie details in the favorite movies database. The response
+ * objects are handled by the streaming TypeAdapters in TmdbTypeAdapters instead of reflection.
+ */
+public class TmdbGson {
+
+    private static final Gson sGson = new GsonBuilder()
+            .registerTypeAdapterFactory(new TmdbTypeAdapters.Factory())
+            .create();
+
+    /**
+     * Returns the shared Gson instance. Gson instances are thread-safe.
+     *
+     * @return The Gson instance.
+     */
+    public static Gson get() {
+        return sGson;
+    }
+
+}
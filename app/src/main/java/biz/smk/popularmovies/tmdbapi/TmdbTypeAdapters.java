@@ -0,0 +1,902 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.tmdbapi;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import biz.smk.popularmovies.tmdbapi.responseobjects.Configuration;
+import biz.smk.popularmovies.tmdbapi.responseobjects.ImagesConfiguration;
+import biz.smk.popularmovies.tmdbapi.responseobjects.LazyMovieListingMovieDetails;
+import biz.smk.popularmovies.tmdbapi.responseobjects.MovieDetails;
+import biz.smk.popularmovies.tmdbapi.responseobjects.MovieGenre;
+import biz.smk.popularmovies.tmdbapi.responseobjects.MovieListingMovieDetails;
+import biz.smk.popularmovies.tmdbapi.responseobjects.MovieListingPage;
+import biz.smk.popularmovies.tmdbapi.responseobjects.MovieReviewDetails;
+import biz.smk.popularmovies.tmdbapi.responseobjects.MovieReviews;
+import biz.smk.popularmovies.tmdbapi.responseobjects.MovieVideoDetails;
+import biz.smk.popularmovies.tmdbapi.responseobjects.MovieVideos;
+import biz.smk.popularmovies.tmdbapi.responseobjects.ReadableMovieListingMovieDetails;
+
+/**
+ * Streaming Gson TypeAdapters for the TMDb API response objects. They read and write the same
+ * JSON as Gson's reflective adapters (the field names correspond to the @SerializedName
+ * annotations of the response objects), but without reflection: no field lookups, no boxing of
+ * intermediate values through Field.set() and no per-class reflection metadata.
+ *
+ * When a field is added to a response object, it must be added to its adapter here as well.
+ *
+ * The movie details in listing pages are read partially (see LazyMovieListingMovieDetails): only
+ * the fields for the poster grid are decoded, the others are copied into a compact JSON byte array.
+ */
+class TmdbTypeAdapters {
+
+    private TmdbTypeAdapters() {}
+
+    /**
+     * TypeAdapterFactory that returns the adapters of this class for the response object types.
+     */
+    static class Factory implements TypeAdapterFactory {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            Class<? super T> rawType = type.getRawType();
+
+            if (rawType == MovieListingPage.class) {
+                return (TypeAdapter<T>) MOVIE_LISTING_PAGE_ADAPTER.nullSafe();
+            } else if (rawType == MovieListingMovieDetails.class ||
+                    rawType == ReadableMovieListingMovieDetails.class) {
+                return (TypeAdapter<T>) MOVIE_LISTING_MOVIE_DETAILS_ADAPTER.nullSafe();
+            } else if (rawType == MovieDetails.class) {
+                return (TypeAdapter<T>) MOVIE_DETAILS_ADAPTER.nullSafe();
+            } else if (rawType == MovieGenre.class) {
+                return (TypeAdapter<T>) MOVIE_GENRE_ADAPTER.nullSafe();
+            } else if (rawType == MovieVideos.class) {
+                return (TypeAdapter<T>) MOVIE_VIDEOS_ADAPTER.nullSafe();
+            } else if (rawType == MovieVideoDetails.class) {
+                return (TypeAdapter<T>) MOVIE_VIDEO_DETAILS_ADAPTER.nullSafe();
+            } else if (rawType == MovieReviews.class) {
+                return (TypeAdapter<T>) MOVIE_REVIEWS_ADAPTER.nullSafe();
+            } else if (rawType == MovieReviewDetails.class) {
+                return (TypeAdapter<T>) MOVIE_REVIEW_DETAILS_ADAPTER.nullSafe();
+            } else if (rawType == Configuration.class) {
+                return (TypeAdapter<T>) CONFIGURATION_ADAPTER.nullSafe();
+            } else if (rawType == ImagesConfiguration.class) {
+                return (TypeAdapter<T>) IMAGES_CONFIGURATION_ADAPTER.nullSafe();
+            }
+
+            return null;
+        }
+
+    }
+
+    /**
+     * Adapter for movie details outside of listing pages. Writes any readable movie details (e.g.
+     * views from the movie details store); reads MovieListingMovieDetails.
+     */
+    private static final TypeAdapter<ReadableMovieListingMovieDetails>
+            MOVIE_LISTING_MOVIE_DETAILS_ADAPTER =
+            new TypeAdapter<ReadableMovieListingMovieDetails>() {
+        @Override
+        public void write(JsonWriter out, ReadableMovieListingMovieDetails value)
+                throws IOException {
+            out.beginObject();
+            out.name("poster_path").value(value.getPosterPath());
+            out.name("adult").value(value.getAdult());
+            out.name("overview").value(value.getOverview());
+            out.name("release_date").value(value.getReleaseDate());
+            out.name("genre_ids");
+            writeIntegerList(out, value.getGenreIds());
+            out.name("id").value(value.getId());
+            out.name("original_title").value(value.getOriginalTitle());
+            out.name("original_language").value(value.getOriginalLanguage());
+            out.name("title").value(value.getTitle());
+            out.name("backdrop_path").value(value.getBackdropPath());
+            out.name("popularity").value(value.getPopularity());
+            out.name("vote_count").value(value.getVoteCount());
+            out.name("video").value(value.getVideo());
+            out.name("vote_average").value(value.getVoteAverage());
+            out.endObject();
+        }
+
+        @Override
+        public MovieListingMovieDetails read(JsonReader in) throws IOException {
+            MovieListingMovieDetails value = new MovieListingMovieDetails();
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "poster_path":
+                        value.setPosterPath(nextString(in));
+                        break;
+                    case "adult":
+                        value.setAdult(nextBoolean(in));
+                        break;
+                    case "overview":
+                        value.setOverview(nextString(in));
+                        break;
+                    case "release_date":
+                        value.setReleaseDate(nextString(in));
+                        break;
+                    case "genre_ids":
+                        value.setGenreIds(nextIntegerList(in));
+                        break;
+                    case "id":
+                        value.setId(nextLong(in));
+                        break;
+                    case "original_title":
+                        value.setOriginalTitle(nextString(in));
+                        break;
+                    case "original_language":
+                        value.setOriginalLanguage(nextString(in));
+                        break;
+                    case "title":
+                        value.setTitle(nextString(in));
+                        break;
+                    case "backdrop_path":
+                        value.setBackdropPath(nextString(in));
+                        break;
+                    case "popularity":
+                        value.setPopularity(nextDouble(in));
+                        break;
+                    case "vote_count":
+                        value.setVoteCount(nextInteger(in));
+                        break;
+                    case "video":
+                        value.setVideo(nextBoolean(in));
+                        break;
+                    case "vote_average":
+                        value.setVoteAverage(nextDouble(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return value;
+        }
+    };
+
+    /**
+     * Adapter for the movie details in listing pages. Reads LazyMovieListingMovieDetails; writes
+     * lazy movie details without decoding their remaining fields (other movie details are written
+     * with MOVIE_LISTING_MOVIE_DETAILS_ADAPTER).
+     */
+    private static final TypeAdapter<MovieListingMovieDetails>
+            LAZY_MOVIE_LISTING_MOVIE_DETAILS_ADAPTER = new TypeAdapter<MovieListingMovieDetails>() {
+        @Override
+        public void write(JsonWriter out, MovieListingMovieDetails value) throws IOException {
+            if (!(value instanceof LazyMovieListingMovieDetails)) {
+                MOVIE_LISTING_MOVIE_DETAILS_ADAPTER.write(out, value);
+                return;
+            }
+
+            out.beginObject();
+            out.name("poster_path").value(value.getPosterPath());
+            out.name("id").value(value.getId());
+            out.name("title").value(value.getTitle());
+
+            JsonReader remainingFields = new JsonReader(new InputStreamReader(
+                    new ByteArrayInputStream(
+                            ((LazyMovieListingMovieDetails) value).getRemainingFields()),
+                    "UTF-8"));
+            remainingFields.beginObject();
+            while (remainingFields.hasNext()) {
+                out.name(remainingFields.nextName());
+                copyValue(remainingFields, out);
+            }
+            remainingFields.endObject();
+
+            out.endObject();
+        }
+
+        @Override
+        public MovieListingMovieDetails read(JsonReader in) throws IOException {
+            Long id = null;
+            String title = null;
+            String posterPath = null;
+
+            StringBuilderWriter remainingFieldsString = new StringBuilderWriter(512);
+            JsonWriter remainingFields = new JsonWriter(remainingFieldsString);
+            remainingFields.beginObject();
+
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                switch (name) {
+                    case "id":
+                        id = nextLong(in);
+                        break;
+                    case "title":
+                        title = nextString(in);
+                        break;
+                    case "poster_path":
+                        posterPath = nextString(in);
+                        break;
+                    default:
+                        remainingFields.name(name);
+                        copyValue(in, remainingFields);
+                }
+            }
+            in.endObject();
+
+            remainingFields.endObject();
+            remainingFields.close();
+
+            return new LazyMovieListingMovieDetails(id, title, posterPath,
+                    remainingFieldsString.toString().getBytes("UTF-8"));
+        }
+    };
+
+    private static final TypeAdapter<MovieListingPage> MOVIE_LISTING_PAGE_ADAPTER =
+            new TypeAdapter<MovieListingPage>() {
+        @Override
+        public void write(JsonWriter out, MovieListingPage value) throws IOException {
+            out.beginObject();
+            out.name("page").value(value.getPage());
+            out.name("results");
+            writeList(out, value.getResults(), LAZY_MOVIE_LISTING_MOVIE_DETAILS_ADAPTER);
+            out.name("total_results").value(value.getTotalResults());
+            out.name("total_pages").value(value.getTotalPages());
+            out.endObject();
+        }
+
+        @Override
+        public MovieListingPage read(JsonReader in) throws IOException {
+            MovieListingPage value = new MovieListingPage();
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "page":
+                        value.setPage(nextInteger(in));
+                        break;
+                    case "results":
+                        value.setResults(nextList(in, LAZY_MOVIE_LISTING_MOVIE_DETAILS_ADAPTER));
+                        break;
+                    case "total_results":
+                        value.setTotalResults(nextInteger(in));
+                        break;
+                    case "total_pages":
+                        value.setTotalPages(nextInteger(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return value;
+        }
+    };
+
+    private static final TypeAdapter<MovieGenre> MOVIE_GENRE_ADAPTER =
+            new TypeAdapter<MovieGenre>() {
+        @Override
+        public void write(JsonWriter out, MovieGenre value) throws IOException {
+            out.beginObject();
+            out.name("id").value(value.getId());
+            out.name("name").value(value.getName());
+            out.endObject();
+        }
+
+        @Override
+        public MovieGenre read(JsonReader in) throws IOException {
+            MovieGenre value = new MovieGenre();
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        value.setId(nextInteger(in));
+                        break;
+                    case "name":
+                        value.setName(nextString(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return value;
+        }
+    };
+
+    private static final TypeAdapter<MovieVideoDetails> MOVIE_VIDEO_DETAILS_ADAPTER =
+            new TypeAdapter<MovieVideoDetails>() {
+        @Override
+        public void write(JsonWriter out, MovieVideoDetails value) throws IOException {
+            out.beginObject();
+            out.name("id").value(value.getId());
+            out.name("iso_639_1").value(value.getIso6391());
+            out.name("iso_3166_1").value(value.getIso31661());
+            out.name("key").value(value.getKey());
+            out.name("name").value(value.getName());
+            out.name("site").value(value.getSite());
+            out.name("size").value(value.getSize());
+            out.name("type").value(value.getType());
+            out.endObject();
+        }
+
+        @Override
+        public MovieVideoDetails read(JsonReader in) throws IOException {
+            MovieVideoDetails value = new MovieVideoDetails();
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        value.setId(nextString(in));
+                        break;
+                    case "iso_639_1":
+                        value.setIso6391(nextString(in));
+                        break;
+                    case "iso_3166_1":
+                        value.setIso31661(nextString(in));
+                        break;
+                    case "key":
+                        value.setKey(nextString(in));
+                        break;
+                    case "name":
+                        value.setName(nextString(in));
+                        break;
+                    case "site":
+                        value.setSite(nextString(in));
+                        break;
+                    case "size":
+                        value.setSize(nextInteger(in));
+                        break;
+                    case "type":
+                        value.setType(nextString(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return value;
+        }
+    };
+
+    private static final TypeAdapter<MovieVideos> MOVIE_VIDEOS_ADAPTER =
+            new TypeAdapter<MovieVideos>() {
+        @Override
+        public void write(JsonWriter out, MovieVideos value) throws IOException {
+            out.beginObject();
+            out.name("id").value(value.getId());
+            out.name("results");
+            writeList(out, value.getMovieVideoDetails(), MOVIE_VIDEO_DETAILS_ADAPTER);
+            out.endObject();
+        }
+
+        @Override
+        public MovieVideos read(JsonReader in) throws IOException {
+            MovieVideos value = new MovieVideos();
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        value.setId(nextInteger(in));
+                        break;
+                    case "results":
+                        value.setResults(nextList(in, MOVIE_VIDEO_DETAILS_ADAPTER));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return value;
+        }
+    };
+
+    private static final TypeAdapter<MovieReviewDetails> MOVIE_REVIEW_DETAILS_ADAPTER =
+            new TypeAdapter<MovieReviewDetails>() {
+        @Override
+        public void write(JsonWriter out, MovieReviewDetails value) throws IOException {
+            out.beginObject();
+            out.name("id").value(value.getId());
+            out.name("author").value(value.getAuthor());
+            out.name("content").value(value.getContent());
+            out.name("url").value(value.getUrl());
+            out.endObject();
+        }
+
+        @Override
+        public MovieReviewDetails read(JsonReader in) throws IOException {
+            MovieReviewDetails value = new MovieReviewDetails();
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        value.setId(nextString(in));
+                        break;
+                    case "author":
+                        value.setAuthor(nextString(in));
+                        break;
+                    case "content":
+                        value.setContent(nextString(in));
+                        break;
+                    case "url":
+                        value.setUrl(nextString(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return value;
+        }
+    };
+
+    private static final TypeAdapter<MovieReviews> MOVIE_REVIEWS_ADAPTER =
+            new TypeAdapter<MovieReviews>() {
+        @Override
+        public void write(JsonWriter out, MovieReviews value) throws IOException {
+            out.beginObject();
+            out.name("id").value(value.getId());
+            out.name("page").value(value.getPage());
+            out.name("results");
+            writeList(out, value.getMovieReviewDetails(), MOVIE_REVIEW_DETAILS_ADAPTER);
+            out.name("total_pages").value(value.getTotalPages());
+            out.name("total_results").value(value.getTotalResults());
+            out.endObject();
+        }
+
+        @Override
+        public MovieReviews read(JsonReader in) throws IOException {
+            MovieReviews value = new MovieReviews();
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        value.setId(nextInteger(in));
+                        break;
+                    case "page":
+                        value.setPage(nextInteger(in));
+                        break;
+                    case "results":
+                        value.setMovieReviewDetails(nextList(in, MOVIE_REVIEW_DETAILS_ADAPTER));
+                        break;
+                    case "total_pages":
+                        value.setTotalPages(nextInteger(in));
+                        break;
+                    case "total_results":
+                        value.setTotalResults(nextInteger(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return value;
+        }
+    };
+
+    private static final TypeAdapter<MovieDetails> MOVIE_DETAILS_ADAPTER =
+            new TypeAdapter<MovieDetails>() {
+        @Override
+        public void write(JsonWriter out, MovieDetails value) throws IOException {
+            out.beginObject();
+            out.name("poster_path").value(value.getPosterPath());
+            out.name("adult").value(value.getAdult());
+            out.name("overview").value(value.getOverview());
+            out.name("release_date").value(value.getReleaseDate());
+            out.name("genres");
+            writeList(out, value.getGenres(), MOVIE_GENRE_ADAPTER);
+            out.name("id").value(value.getId());
+            out.name("original_title").value(value.getOriginalTitle());
+            out.name("original_language").value(value.getOriginalLanguage());
+            out.name("title").value(value.getTitle());
+            out.name("backdrop_path").value(value.getBackdropPath());
+            out.name("popularity").value(value.getPopularity());
+            out.name("vote_count").value(value.getVoteCount());
+            out.name("video").value(value.getVideo());
+            out.name("vote_average").value(value.getVoteAverage());
+            out.name("videos");
+            MOVIE_VIDEOS_ADAPTER.nullSafe().write(out, value.getVideos());
+            out.name("reviews");
+            MOVIE_REVIEWS_ADAPTER.nullSafe().write(out, value.getReviews());
+            out.endObject();
+        }
+
+        @Override
+        public MovieDetails read(JsonReader in) throws IOException {
+            MovieDetails value = new MovieDetails();
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "poster_path":
+                        value.setPosterPath(nextString(in));
+                        break;
+                    case "adult":
+                        value.setAdult(nextBoolean(in));
+                        break;
+                    case "overview":
+                        value.setOverview(nextString(in));
+                        break;
+                    case "release_date":
+                        value.setReleaseDate(nextString(in));
+                        break;
+                    case "genres":
+                        value.setGenres(nextList(in, MOVIE_GENRE_ADAPTER));
+                        break;
+                    case "id":
+                        value.setId(nextLong(in));
+                        break;
+                    case "original_title":
+                        value.setOriginalTitle(nextString(in));
+                        break;
+                    case "original_language":
+                        value.setOriginalLanguage(nextString(in));
+                        break;
+                    case "title":
+                        value.setTitle(nextString(in));
+                        break;
+                    case "backdrop_path":
+                        value.setBackdropPath(nextString(in));
+                        break;
+                    case "popularity":
+                        value.setPopularity(nextDouble(in));
+                        break;
+                    case "vote_count":
+                        value.setVoteCount(nextInteger(in));
+                        break;
+                    case "video":
+                        value.setVideo(nextBoolean(in));
+                        break;
+                    case "vote_average":
+                        value.setVoteAverage(nextDouble(in));
+                        break;
+                    case "videos":
+                        value.setVideos(MOVIE_VIDEOS_ADAPTER.nullSafe().read(in));
+                        break;
+                    case "reviews":
+                        value.setReviews(MOVIE_REVIEWS_ADAPTER.nullSafe().read(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return value;
+        }
+    };
+
+    private static final TypeAdapter<ImagesConfiguration> IMAGES_CONFIGURATION_ADAPTER =
+            new TypeAdapter<ImagesConfiguration>() {
+        @Override
+        public void write(JsonWriter out, ImagesConfiguration value) throws IOException {
+            out.beginObject();
+            out.name("base_url").value(value.getBaseUrl());
+            out.name("secure_base_url").value(value.getSecureBaseUrl());
+            out.name("backdrop_sizes");
+            writeStringList(out, value.getBackdropSizes());
+            out.name("logo_sizes");
+            writeStringList(out, value.getLogoSizes());
+            out.name("poster_sizes");
+            writeStringList(out, value.getPosterSizes());
+            out.name("profile_sizes");
+            writeStringList(out, value.getProfileSizes());
+            out.name("still_sizes");
+            writeStringList(out, value.getStillSizes());
+            out.endObject();
+        }
+
+        @Override
+        public ImagesConfiguration read(JsonReader in) throws IOException {
+            ImagesConfiguration value = new ImagesConfiguration();
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "base_url":
+                        value.setBaseUrl(nextString(in));
+                        break;
+                    case "secure_base_url":
+                        value.setSecureBaseUrl(nextString(in));
+                        break;
+                    case "backdrop_sizes":
+                        value.setBackdropSizes(nextStringList(in));
+                        break;
+                    case "logo_sizes":
+                        value.setLogoSizes(nextStringList(in));
+                        break;
+                    case "poster_sizes":
+                        value.setPosterSizes(nextStringList(in));
+                        break;
+                    case "profile_sizes":
+                        value.setProfileSizes(nextStringList(in));
+                        break;
+                    case "still_sizes":
+                        value.setStillSizes(nextStringList(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return value;
+        }
+    };
+
+    private static final TypeAdapter<Configuration> CONFIGURATION_ADAPTER =
+            new TypeAdapter<Configuration>() {
+        @Override
+        public void write(JsonWriter out, Configuration value) throws IOException {
+            out.beginObject();
+            out.name("images");
+            IMAGES_CONFIGURATION_ADAPTER.nullSafe().write(out, value.getImagesConfiguration());
+            out.name("change_keys");
+            writeStringList(out, value.getChangeKeys());
+            out.endObject();
+        }
+
+        @Override
+        public Configuration read(JsonReader in) throws IOException {
+            Configuration value = new Configuration();
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "images":
+                        value.setImagesConfiguration(IMAGES_CONFIGURATION_ADAPTER.nullSafe()
+                                .read(in));
+                        break;
+                    case "change_keys":
+                        value.setChangeKeys(nextStringList(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return value;
+        }
+    };
+
+    /**
+     * Copies the next value (including nested arrays and objects) from in to out. Numbers are
+     * copied literally.
+     */
+    private static void copyValue(JsonReader in, JsonWriter out) throws IOException {
+        switch (in.peek()) {
+            case BEGIN_ARRAY:
+                in.beginArray();
+                out.beginArray();
+                while (in.hasNext()) {
+                    copyValue(in, out);
+                }
+                in.endArray();
+                out.endArray();
+                break;
+            case BEGIN_OBJECT:
+                in.beginObject();
+                out.beginObject();
+                while (in.hasNext()) {
+                    out.name(in.nextName());
+                    copyValue(in, out);
+                }
+                in.endObject();
+                out.endObject();
+                break;
+            case STRING:
+                out.value(in.nextString());
+                break;
+            case NUMBER:
+                out.jsonValue(in.nextString());
+                break;
+            case BOOLEAN:
+                out.value(in.nextBoolean());
+                break;
+            case NULL:
+                in.nextNull();
+                out.nullValue();
+                break;
+            default:
+                throw new IllegalStateException("Unexpected token: " + in.peek());
+        }
+    }
+
+    private static String nextString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    private static Boolean nextBoolean(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextBoolean();
+    }
+
+    private static Integer nextInteger(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextInt();
+    }
+
+    private static Long nextLong(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextLong();
+    }
+
+    private static Double nextDouble(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextDouble();
+    }
+
+    private static List<Integer> nextIntegerList(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        List<Integer> list = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            list.add(nextInteger(in));
+        }
+        in.endArray();
+
+        return list;
+    }
+
+    private static List<String> nextStringList(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        List<String> list = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            list.add(nextString(in));
+        }
+        in.endArray();
+
+        return list;
+    }
+
+    private static <T> List<T> nextList(JsonReader in, TypeAdapter<T> elementAdapter)
+            throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        TypeAdapter<T> nullSafeAdapter = elementAdapter.nullSafe();
+
+        List<T> list = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            list.add(nullSafeAdapter.read(in));
+        }
+        in.endArray();
+
+        return list;
+    }
+
+    private static void writeIntegerList(JsonWriter out, List<Integer> list) throws IOException {
+        if (list == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginArray();
+        for (Integer element : list) {
+            out.value(element);
+        }
+        out.endArray();
+    }
+
+    private static void writeStringList(JsonWriter out, List<String> list) throws IOException {
+        if (list == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginArray();
+        for (String element : list) {
+            out.value(element);
+        }
+        out.endArray();
+    }
+
+    private static <T> void writeList(JsonWriter out, List<T> list, TypeAdapter<T> elementAdapter)
+            throws IOException {
+        if (list == null) {
+            out.nullValue();
+            return;
+        }
+
+        TypeAdapter<T> nullSafeAdapter = elementAdapter.nullSafe();
+
+        out.beginArray();
+        for (T element : list) {
+            nullSafeAdapter.write(out, element);
+        }
+        out.endArray();
+    }
+
+    /**
+     * Writer that appends to a StringBuilder. Unlike StringWriter (StringBuffer), it does not
+     * synchronize every write.
+     */
+    private static class StringBuilderWriter extends Writer {
+
+        private final StringBuilder mBuilder;
+
+        private StringBuilderWriter(int capacity) {
+            mBuilder = new StringBuilder(capacity);
+        }
+
+        @Override
+        public void write(int c) {
+            mBuilder.append((char) c);
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int count) {
+            mBuilder.append(buffer, offset, count);
+        }
+
+        @Override
+        public void write(String string, int offset, int count) {
+            mBuilder.append(string, offset, offset + count);
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {}
+
+        @Override
+        public String toString() {
+            return mBuilder.toString();
+        }
+
+    }
+
+}
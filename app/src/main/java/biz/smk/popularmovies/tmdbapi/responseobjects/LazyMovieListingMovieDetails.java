@@ -0,0 +1,186 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.tmdbapi.responseobjects;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+
+import biz.smk.popularmovies.tmdbapi.TmdbGson;
+
+/**
+ * Movie details from a movie listing page that are only partially deserialized: the fields the
+ * poster grid needs (id, title and poster path) are decoded right away, all other fields are kept
+ * as a UTF-8 encoded JSON object (which is much smaller than the decoded strings and boxed values)
+ * and decoded on first access to one of them.
+ *
+ * Listing pages are read with these movie details by the TMDb Gson TypeAdapters.
+ */
+public class LazyMovieListingMovieDetails extends MovieListingMovieDetails {
+
+    private final byte[] mRemainingFields;
+    private MovieListingMovieDetails mDecodedFields;
+
+    /**
+     * Initializes new movie details.
+     *
+     * @param id The movie id.
+     * @param title The title.
+     * @param posterPath The poster path.
+     * @param remainingFields All other fields as UTF-8 encoded JSON object.
+     */
+    public LazyMovieListingMovieDetails(Long id, String title, String posterPath,
+                                        byte[] remainingFields) {
+        super.setId(id);
+        super.setTitle(title);
+        super.setPosterPath(posterPath);
+        mRemainingFields = remainingFields;
+    }
+
+    /**
+     * Returns the fields that are not decoded right away.
+     *
+     * @return The fields as UTF-8 encoded JSON object (must not be modified).
+     */
+    public byte[] getRemainingFields() {
+        return mRemainingFields;
+    }
+
+    /**
+     * Decodes fields as returned from getRemainingFields(). Only the fields that are contained in
+     * the given JSON object are set on the returned movie details.
+     *
+     * @param remainingFields The fields as UTF-8 encoded JSON object.
+     * @return The decoded movie details.
+     */
+    public static MovieListingMovieDetails decodeRemainingFields(byte[] remainingFields) {
+        try {
+            return TmdbGson.get().fromJson(new InputStreamReader(
+                    new ByteArrayInputStream(remainingFields), "UTF-8"),
+                    MovieListingMovieDetails.class);
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e); // UTF-8 is always supported
+        }
+    }
+
+    private synchronized MovieListingMovieDetails getDecodedFields() {
+        if (mDecodedFields == null) {
+            mDecodedFields = decodeRemainingFields(mRemainingFields);
+        }
+        return mDecodedFields;
+    }
+
+    @Override
+    public Boolean getAdult() {
+        return getDecodedFields().getAdult();
+    }
+
+    @Override
+    public void setAdult(Boolean adult) {
+        getDecodedFields().setAdult(adult);
+    }
+
+    @Override
+    public String getOverview() {
+        return getDecodedFields().getOverview();
+    }
+
+    @Override
+    public void setOverview(String overview) {
+        getDecodedFields().setOverview(overview);
+    }
+
+    @Override
+    public String getReleaseDate() {
+        return getDecodedFields().getReleaseDate();
+    }
+
+    @Override
+    public void setReleaseDate(String releaseDate) {
+        getDecodedFields().setReleaseDate(releaseDate);
+    }
+
+    @Override
+    public List<Integer> getGenreIds() {
+        return getDecodedFields().getGenreIds();
+    }
+
+    @Override
+    public void setGenreIds(List<Integer> genreIds) {
+        getDecodedFields().setGenreIds(genreIds);
+    }
+
+    @Override
+    public String getOriginalTitle() {
+        return getDecodedFields().getOriginalTitle();
+    }
+
+    @Override
+    public void setOriginalTitle(String originalTitle) {
+        getDecodedFields().setOriginalTitle(originalTitle);
+    }
+
+    @Override
+    public String getOriginalLanguage() {
+        return getDecodedFields().getOriginalLanguage();
+    }
+
+    @Override
+    public void setOriginalLanguage(String originalLanguage) {
+        getDecodedFields().setOriginalLanguage(originalLanguage);
+    }
+
+    @Override
+    public String getBackdropPath() {
+        return getDecodedFields().getBackdropPath();
+    }
+
+    @Override
+    public void setBackdropPath(String backdropPath) {
+        getDecodedFields().setBackdropPath(backdropPath);
+    }
+
+    @Override
+    public Double getPopularity() {
+        return getDecodedFields().getPopularity();
+    }
+
+    @Override
+    public void setPopularity(Double popularity) {
+        getDecodedFields().setPopularity(popularity);
+    }
+
+    @Override
+    public Integer getVoteCount() {
+        return getDecodedFields().getVoteCount();
+    }
+
+    @Override
+    public void setVoteCount(Integer voteCount) {
+        getDecodedFields().setVoteCount(voteCount);
+    }
+
+    @Override
+    public Boolean getVideo() {
+        return getDecodedFields().getVideo();
+    }
+
+    @Override
+    public void setVideo(Boolean video) {
+        getDecodedFields().setVideo(video);
+    }
+
+    @Override
+    public Double getVoteAverage() {
+        return getDecodedFields().getVoteAverage();
+    }
+
+    @Override
+    public void setVoteAverage(Double voteAverage) {
+        getDecodedFields().setVoteAverage(voteAverage);
+    }
+
+}
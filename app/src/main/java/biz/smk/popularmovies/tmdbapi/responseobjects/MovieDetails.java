@@ -0,0 +1,269 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.tmdbapi.responseobjects;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class for full movie details received from the API, including the appended videos and reviews
+ * responses (append_to_response=videos,reviews).
+ */
+@SuppressWarnings("unused")
+public class MovieDetails {
+
+    @SerializedName("poster_path")
+    @Expose
+    private String mPosterPath;
+
+    @SerializedName("adult")
+    @Expose
+    private Boolean mAdult;
+
+    @SerializedName("overview")
+    @Expose
+    private String mOverview;
+
+    @SerializedName("release_date")
+    @Expose
+    private String mReleaseDate;
+
+    @SerializedName("genres")
+    @Expose
+    private List<MovieGenre> mGenres = null;
+
+    @SerializedName("id")
+    @Expose
+    private Long mId;
+
+    @SerializedName("original_title")
+    @Expose
+    private String mOriginalTitle;
+
+    @SerializedName("original_language")
+    @Expose
+    private String mOriginalLanguage;
+
+    @SerializedName("title")
+    @Expose
+    private String mTitle;
+
+    @SerializedName("backdrop_path")
+    @Expose
+    private String mBackdropPath;
+
+    @SerializedName("popularity")
+    @Expose
+    private Double mPopularity;
+
+    @SerializedName("vote_count")
+    @Expose
+    private Integer mVoteCount;
+
+    @SerializedName("video")
+    @Expose
+    private Boolean mVideo;
+
+    @SerializedName("vote_average")
+    @Expose
+    private Double mVoteAverage = -1d;
+
+    @SerializedName("videos")
+    @Expose
+    private MovieVideos mVideos;
+
+    @SerializedName("reviews")
+    @Expose
+    private MovieReviews mReviews;
+
+    public String getPosterPath() {
+        return mPosterPath;
+    }
+
+    public void setPosterPath(String posterPath) {
+        this.mPosterPath = posterPath;
+    }
+
+    public Boolean getAdult() {
+        return mAdult;
+    }
+
+    public void setAdult(Boolean adult) {
+        this.mAdult = adult;
+    }
+
+    public String getOverview() {
+        return mOverview;
+    }
+
+    public void setOverview(String overview) {
+        this.mOverview = overview;
+    }
+
+    public String getReleaseDate() {
+        return mReleaseDate;
+    }
+
+    public void setReleaseDate(String releaseDate) {
+        this.mReleaseDate = releaseDate;
+    }
+
+    public List<MovieGenre> getGenres() {
+        return mGenres;
+    }
+
+    public void setGenres(List<MovieGenre> genres) {
+        this.mGenres = genres;
+    }
+
+    public Long getId() {
+        return mId;
+    }
+
+    public void setId(Long id) {
+        this.mId = id;
+    }
+
+    public String getOriginalTitle() {
+        return mOriginalTitle;
+    }
+
+    public void setOriginalTitle(String originalTitle) {
+        this.mOriginalTitle = originalTitle;
+    }
+
+    public String getOriginalLanguage() {
+        return mOriginalLanguage;
+    }
+
+    public void setOriginalLanguage(String originalLanguage) {
+        this.mOriginalLanguage = originalLanguage;
+    }
+
+    public String getTitle() {
+        return mTitle;
+    }
+
+    public void setTitle(String title) {
+        this.mTitle = title;
+    }
+
+    public String getBackdropPath() {
+        return mBackdropPath;
+    }
+
+    public void setBackdropPath(String backdropPath) {
+        this.mBackdropPath = backdropPath;
+    }
+
+    public Double getPopularity() {
+        return mPopularity;
+    }
+
+    public void setPopularity(Double popularity) {
+        this.mPopularity = popularity;
+    }
+
+    public Integer getVoteCount() {
+        return mVoteCount;
+    }
+
+    public void setVoteCount(Integer voteCount) {
+        this.mVoteCount = voteCount;
+    }
+
+    public Boolean getVideo() {
+        return mVideo;
+    }
+
+    public void setVideo(Boolean video) {
+        this.mVideo = video;
+    }
+
+    public Double getVoteAverage() {
+        return mVoteAverage;
+    }
+
+    public void setVoteAverage(Double voteAverage) {
+        this.mVoteAverage = voteAverage;
+    }
+
+    /**
+     * Returns the appended videos response.
+     *
+     * @return The movie videos (never null - an empty result if the response contained no videos).
+     */
+    public MovieVideos getVideos() {
+        if (mVideos == null) {
+            mVideos = new MovieVideos();
+        }
+        if (mVideos.getMovieVideoDetails() == null) {
+            mVideos.setResults(new ArrayList<MovieVideoDetails>());
+        }
+        return mVideos;
+    }
+
+    public void setVideos(MovieVideos videos) {
+        this.mVideos = videos;
+    }
+
+    /**
+     * Returns the appended reviews response.
+     *
+     * @return The movie reviews (never null - an empty result if the response contained no
+     *         reviews).
+     */
+    public MovieReviews getReviews() {
+        if (mReviews == null) {
+            mReviews = new MovieReviews();
+        }
+        if (mReviews.getMovieReviewDetails() == null) {
+            mReviews.setMovieReviewDetails(new ArrayList<MovieReviewDetails>());
+        }
+        return mReviews;
+    }
+
+    public void setReviews(MovieReviews reviews) {
+        this.mReviews = reviews;
+    }
+
+    /**
+     * Converts these movie details into movie details as received in movie listings (e.g. for
+     * adding them to the movie details store or the favorite movies).
+     *
+     * @return The movie listing movie details.
+     */
+    public MovieListingMovieDetails toMovieListingMovieDetails() {
+        MovieListingMovieDetails details = new MovieListingMovieDetails();
+
+        details.setPosterPath(mPosterPath);
+        details.setAdult(mAdult);
+        details.setOverview(mOverview);
+        details.setReleaseDate(mReleaseDate);
+        details.setId(mId);
+        details.setOriginalTitle(mOriginalTitle);
+        details.setOriginalLanguage(mOriginalLanguage);
+        details.setTitle(mTitle);
+        details.setBackdropPath(mBackdropPath);
+        details.setPopularity(mPopularity);
+        details.setVoteCount(mVoteCount);
+        details.setVideo(mVideo);
+        details.setVoteAverage(mVoteAverage);
+
+        if (mGenres != null) {
+            List<Integer> genreIds = new ArrayList<>();
+            for (MovieGenre genre : mGenres) {
+                genreIds.add(genre.getId());
+            }
+            details.setGenreIds(genreIds);
+        }
+
+        return details;
+    }
+
+}
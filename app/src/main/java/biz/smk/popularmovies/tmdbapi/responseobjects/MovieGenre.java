@@ -0,0 +1,40 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.tmdbapi.responseobjects;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * Class for movie genres received in the movie details.
+ */
+@SuppressWarnings("unused")
+public class MovieGenre {
+
+    @SerializedName("id")
+    @Expose
+    private Integer mId;
+
+    @SerializedName("name")
+    @Expose
+    private String mName;
+
+    public Integer getId() {
+        return mId;
+    }
+
+    public void setId(Integer id) {
+        this.mId = id;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public void setName(String name) {
+        this.mName = name;
+    }
+
+}
@@ -4,27 +4,16 @@
 
 package biz.smk.popularmovies.tmdbapi.responseobjects;
 
-import android.annotation.SuppressLint;
-
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.List;
 
 /**
  * Class for movie details received in movie listings.
  */
 @SuppressWarnings("unused")
-public class MovieListingMovieDetails {
-
-    /**
-     * The format of the release date string.
-     */
-    @SuppressLint("SimpleDateFormat")
-    private static final SimpleDateFormat RELEASE_DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd");
+public class MovieListingMovieDetails extends ReadableMovieListingMovieDetails {
 
     @SerializedName("poster_path")
     @Expose
@@ -82,6 +71,7 @@ public class MovieListingMovieDetails {
     @Expose
     private Double mVoteAverage = -1d;
 
+    @Override
     public String getPosterPath() {
         return mPosterPath;
     }
@@ -90,6 +80,7 @@ public class MovieListingMovieDetails {
         this.mPosterPath = posterPath;
     }
 
+    @Override
     public Boolean getAdult() {
         return mAdult;
     }
@@ -98,6 +89,7 @@ public class MovieListingMovieDetails {
         this.mAdult = adult;
     }
 
+    @Override
     public String getOverview() {
         return mOverview;
     }
@@ -106,27 +98,16 @@ public class MovieListingMovieDetails {
         this.mOverview = overview;
     }
 
+    @Override
     public String getReleaseDate() {
         return mReleaseDate;
     }
 
-    /**
-     * Returns the release date as java Date object.
-     *
-     * @return Date object from parsed release date String or null.
-     */
-    public Date getParsedReleaseDate() {
-        try {
-            return RELEASE_DATE_FORMAT.parse(mReleaseDate);
-        } catch (ParseException e) {
-            return null;
-        }
-    }
-
     public void setReleaseDate(String releaseDate) {
         this.mReleaseDate = releaseDate;
     }
 
+    @Override
     public List<Integer> getGenreIds() {
         return mGenreIds;
     }
@@ -135,6 +116,7 @@ public class MovieListingMovieDetails {
         this.mGenreIds = genreIds;
     }
 
+    @Override
     public Long getId() {
         return mId;
     }
@@ -143,6 +125,7 @@ public class MovieListingMovieDetails {
         this.mId = id;
     }
 
+    @Override
     public String getOriginalTitle() {
         return mOriginalTitle;
     }
@@ -151,6 +134,7 @@ public class MovieListingMovieDetails {
         this.mOriginalTitle = originalTitle;
     }
 
+    @Override
     public String getOriginalLanguage() {
         return mOriginalLanguage;
     }
@@ -159,6 +143,7 @@ public class MovieListingMovieDetails {
         this.mOriginalLanguage = originalLanguage;
     }
 
+    @Override
     public String getTitle() {
         return mTitle;
     }
@@ -167,6 +152,7 @@ public class MovieListingMovieDetails {
         this.mTitle = title;
     }
 
+    @Override
     public String getBackdropPath() {
         return mBackdropPath;
     }
@@ -175,6 +161,7 @@ public class MovieListingMovieDetails {
         this.mBackdropPath = backdropPath;
     }
 
+    @Override
     public Double getPopularity() {
         return mPopularity;
     }
@@ -183,6 +170,7 @@ public class MovieListingMovieDetails {
         this.mPopularity = popularity;
     }
 
+    @Override
     public Integer getVoteCount() {
         return mVoteCount;
     }
@@ -191,6 +179,7 @@ public class MovieListingMovieDetails {
         this.mVoteCount = voteCount;
     }
 
+    @Override
     public Boolean getVideo() {
         return mVideo;
     }
@@ -199,6 +188,7 @@ public class MovieListingMovieDetails {
         this.mVideo = video;
     }
 
+    @Override
     public Double getVoteAverage() {
         return mVoteAverage;
     }
@@ -0,0 +1,66 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.tmdbapi.responseobjects;
+
+import java.util.Date;
+import java.util.List;
+
+import biz.smk.popularmovies.utilities.DateUtils;
+
+/**
+ * Read-only movie details as received in movie listings. This class has no fields: it is
+ * implemented by the MovieListingMovieDetails bean and by the views that the movie details store
+ * returns, which read from compact column stores.
+ */
+public abstract class ReadableMovieListingMovieDetails {
+
+    public abstract String getPosterPath();
+
+    public abstract Boolean getAdult();
+
+    public abstract String getOverview();
+
+    public abstract String getReleaseDate();
+
+    /**
+     * Returns the release date as number of days since 1970-01-01. Movie details from the movie
+     * details store return a value that has been computed when they were added to the store.
+     *
+     * @return The release date in epoch days or DateUtils.NO_DATE.
+     */
+    public int getReleaseEpochDay() {
+        return DateUtils.parseEpochDay(getReleaseDate());
+    }
+
+    /**
+     * Returns the release date as java Date object.
+     *
+     * @return Date object from parsed release date String or null.
+     */
+    public Date getParsedReleaseDate() {
+        return DateUtils.toDate(getReleaseEpochDay());
+    }
+
+    public abstract List<Integer> getGenreIds();
+
+    public abstract Long getId();
+
+    public abstract String getOriginalTitle();
+
+    public abstract String getOriginalLanguage();
+
+    public abstract String getTitle();
+
+    public abstract String getBackdropPath();
+
+    public abstract Double getPopularity();
+
+    public abstract Integer getVoteCount();
+
+    public abstract Boolean getVideo();
+
+    public abstract Double getVoteAverage();
+
+}
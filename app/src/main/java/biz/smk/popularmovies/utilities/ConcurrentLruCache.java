@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.utilities;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded cache on top of a ConcurrentHashMap. Reads and writes do not take a lock. Every
+ * access stamps the entry with a value of a global access counter; when the cache grows beyond its
+ * maximum size, the entry with the oldest stamp is evicted. Concurrent writers may evict one entry
+ * too many, so the size bound and the LRU order are approximate.
+ *
+ * The eviction scans all entries, so this cache is meant for small sizes (tens of entries).
+ *
+ * @param <K> Type of the keys.
+ * @param <V> Type of the values.
+ */
+public class ConcurrentLruCache<K, V> {
+
+    private final int mMaxSize;
+    private final ConcurrentHashMap<K, Entry<V>> mEntries = new ConcurrentHashMap<>();
+    private final AtomicLong mAccessClock = new AtomicLong();
+    private final AtomicInteger mEvictionCount = new AtomicInteger();
+
+    /**
+     * Initializes a new cache.
+     *
+     * @param maxSize The maximum number of entries.
+     */
+    public ConcurrentLruCache(int maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Returns the value for the given key and marks it as recently used.
+     *
+     * @param key The key.
+     * @return The value or null if there is no entry for the key.
+     */
+    public V get(K key) {
+        Entry<V> entry = mEntries.get(key);
+        if (entry == null) return null;
+
+        entry.accessTime = mAccessClock.incrementAndGet();
+        return entry.value;
+    }
+
+    /**
+     * Atomically adds the given value for the given key if there is no entry for the key yet.
+     *
+     * @param key The key.
+     * @param value The value.
+     * @return The existing value (which is marked as recently used) or null if the given value
+     *         was added.
+     */
+    public V putIfAbsent(K key, V value) {
+        Entry<V> entry = new Entry<>(value, mAccessClock.incrementAndGet());
+        Entry<V> existingEntry = mEntries.putIfAbsent(key, entry);
+
+        if (existingEntry != null) {
+            existingEntry.accessTime = mAccessClock.incrementAndGet();
+            return existingEntry.value;
+        }
+
+        trimToSize();
+        return null;
+    }
+
+    /**
+     * Adds the given value for the given key, replacing an existing entry.
+     *
+     * @param key The key.
+     * @param value The value.
+     */
+    public void put(K key, V value) {
+        mEntries.put(key, new Entry<>(value, mAccessClock.incrementAndGet()));
+        trimToSize();
+    }
+
+    /**
+     * Removes the entry for the given key if its value is the given value (identity).
+     *
+     * @param key The key.
+     * @param value The expected value.
+     * @return True if the entry was removed.
+     */
+    public boolean remove(K key, V value) {
+        Entry<V> entry = mEntries.get(key);
+        return entry != null && entry.value == value && mEntries.remove(key, entry);
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return The number of entries.
+     */
+    public int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * Returns the number of entries that have been evicted so far.
+     *
+     * @return The number of evicted entries.
+     */
+    public int getEvictionCount() {
+        return mEvictionCount.get();
+    }
+
+    /**
+     * Evicts the least recently used entries until the cache is not larger than its maximum size.
+     */
+    private void trimToSize() {
+        while (mEntries.size() > mMaxSize) {
+            K eldestKey = null;
+            Entry<V> eldestEntry = null;
+
+            for (Map.Entry<K, Entry<V>> mapEntry : mEntries.entrySet()) {
+                Entry<V> entry = mapEntry.getValue();
+                if (eldestEntry == null || entry.accessTime < eldestEntry.accessTime) {
+                    eldestKey = mapEntry.getKey();
+                    eldestEntry = entry;
+                }
+            }
+
+            if (eldestEntry == null) return;
+
+            if (mEntries.remove(eldestKey, eldestEntry)) {
+                mEvictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    private static class Entry<V> {
+
+        private final V value;
+        private volatile long accessTime;
+
+        private Entry(V value, long accessTime) {
+            this.value = value;
+            this.accessTime = accessTime;
+        }
+
+    }
+
+}
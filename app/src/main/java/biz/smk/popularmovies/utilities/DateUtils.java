@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.utilities;
+
+import java.util.Date;
+import java.util.GregorianCalendar;
+
+/**
+ * Helpers for dates as used by the TMDb API (yyyy-MM-dd strings). Dates are converted to epoch
+ * days (days since 1970-01-01), which can be stored in an int and converted back to a Date without
+ * parsing. Unlike SimpleDateFormat, the helpers are thread-safe and do not allocate.
+ */
+public class DateUtils {
+
+    /**
+     * Epoch day value for missing or invalid dates.
+     */
+    public static final int NO_DATE = Integer.MIN_VALUE;
+
+    private DateUtils() {}
+
+    /**
+     * Parses a date string in the format yyyy-MM-dd (e.g. "2016-12-24").
+     *
+     * @param date The date string (may be null).
+     * @return The number of days since 1970-01-01, or NO_DATE if the string is null or not a valid
+     *         date.
+     */
+    public static int parseEpochDay(String date) {
+        if (date == null || date.length() != 10 || date.charAt(4) != '-' ||
+                date.charAt(7) != '-') {
+            return NO_DATE;
+        }
+
+        int year = parseDigits(date, 0, 4);
+        int month = parseDigits(date, 5, 7);
+        int day = parseDigits(date, 8, 10);
+
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > getDaysInMonth(year, month)) {
+            return NO_DATE;
+        }
+
+        return toEpochDay(year, month, day);
+    }
+
+    /**
+     * Converts an epoch day into a Date at midnight (local time) of that day, like
+     * SimpleDateFormat("yyyy-MM-dd").parse() would return it.
+     *
+     * @param epochDay The number of days since 1970-01-01.
+     * @return The Date or null if epochDay is NO_DATE.
+     */
+    public static Date toDate(int epochDay) {
+        if (epochDay == NO_DATE) return null;
+
+        // Inverse of toEpochDay(), see there.
+        int z = epochDay + 719468;
+        int era = (z >= 0 ? z : z - 146096) / 146097;
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        return new GregorianCalendar(year, month - 1, day).getTime();
+    }
+
+    /**
+     * Returns the number of days since 1970-01-01 for the given date of the proleptic Gregorian
+     * calendar. The year is shifted to start in March, so the leap day is the last day of the
+     * (shifted) year, and counted in 400 year eras of 146097 days.
+     */
+    private static int toEpochDay(int year, int month, int day) {
+        int shiftedYear = month <= 2 ? year - 1 : year;
+        int era = (shiftedYear >= 0 ? shiftedYear : shiftedYear - 399) / 400;
+        int yearOfEra = shiftedYear - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static int getDaysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leapYear = year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+                return leapYear ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Parses the decimal digits in string[from, to).
+     *
+     * @return The number or -1 if there is a non-digit character.
+     */
+    private static int parseDigits(String string, int from, int to) {
+        int number = 0;
+        for (int i = from; i < to; i++) {
+            char c = string.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.utilities;
+
+import android.content.Context;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import biz.smk.popularmovies.Application;
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
+/**
+ * Process-wide registry for OkHttp clients. All clients handed out by this class are derived from
+ * one base client with newBuilder(), so they share the same connection pool (keep-alive sockets,
+ * TLS sessions) and the same dispatcher.
+ */
+public class HttpClients {
+
+    /**
+     * Connection pool settings. TMDb API and image requests go to two hosts only, so a small
+     * number of idle connections is enough to keep them alive between requests.
+     */
+    private static final int MAX_IDLE_CONNECTIONS = 6;
+    private static final long KEEP_ALIVE_DURATION = 5; // minutes
+
+    /**
+     * Dispatcher limits (only effective for asynchronous calls).
+     */
+    private static final int MAX_REQUESTS = 16;
+    private static final int MAX_REQUESTS_PER_HOST = 8;
+
+    private static final long CONNECT_TIMEOUT = 15; // seconds
+    private static final long READ_TIMEOUT = 20; // seconds
+
+    private static final String IMAGE_CACHE_DIR_NAME = "image-cache";
+    private static final long IMAGE_CACHE_MAX_SIZE = 50 * 1024 * 1024; // 50 MB
+
+    private static OkHttpClient sBaseClient;
+    private static OkHttpClient sImageClient;
+
+    /**
+     * Returns the base client. Feature specific clients should be derived from this client with
+     * newBuilder() so that the connection pool and dispatcher are shared.
+     *
+     * @return The base OkHttp client.
+     */
+    public static synchronized OkHttpClient getBaseClient() {
+        if (sBaseClient == null) {
+            Dispatcher dispatcher = new Dispatcher();
+            dispatcher.setMaxRequests(MAX_REQUESTS);
+            dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+
+            sBaseClient = new OkHttpClient.Builder()
+                    .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_DURATION,
+                            TimeUnit.MINUTES))
+                    .dispatcher(dispatcher)
+                    .connectTimeout(CONNECT_TIMEOUT, TimeUnit.SECONDS)
+                    .readTimeout(READ_TIMEOUT, TimeUnit.SECONDS)
+                    .build();
+        }
+
+        return sBaseClient;
+    }
+
+    /**
+     * Returns the client for downloading images. It shares the connection pool and dispatcher of
+     * the base client and adds a disk cache for the downloaded images.
+     *
+     * @return The OkHttp client for image downloads.
+     */
+    public static synchronized OkHttpClient getImageClient() {
+        if (sImageClient == null) {
+            Context appContext = Application.getContext();
+            File cacheDir = new File(appContext.getCacheDir(), IMAGE_CACHE_DIR_NAME);
+
+            sImageClient = getBaseClient().newBuilder()
+                    .cache(new Cache(cacheDir, IMAGE_CACHE_MAX_SIZE))
+                    .build();
+        }
+
+        return sImageClient;
+    }
+
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.utilities;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.IOException;
+
+import okhttp3.Call;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+
+/**
+ * Downloads images into the disk cache of the image client (HttpClients.getImageClient()) without
+ * decoding them. Picasso's fetch() would decode every image at its original size (as ARGB_8888)
+ * only to throw the bitmap away; warming the disk cache directly leaves decoding to the request
+ * that actually shows the image, at the size of its view.
+ *
+ * The response body is read completely (OkHttp only commits a cache entry once the body has been
+ * exhausted) and then closed.
+ */
+class ImageCacheWarmer {
+
+    private static final long READ_BUFFER_SIZE = 8192;
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Enqueues a download of the given image into the disk cache.
+     *
+     * @param uri The image URI.
+     * @param callback Callback that is called on the main thread (not called if the returned call
+     *                 has been canceled).
+     * @return The call, which can be canceled.
+     */
+    static Call warm(String uri, final Callback callback) {
+        Request request = new Request.Builder().url(uri).build();
+        final Call call = HttpClients.getImageClient().newCall(request);
+
+        call.enqueue(new okhttp3.Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                post(call, callback, false);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                ResponseBody responseBody = response.body();
+                boolean success = false;
+                try {
+                    if (response.isSuccessful()) {
+                        drain(responseBody.source());
+                        success = true;
+                    }
+                } catch (IOException e) {
+                    // success stays false
+                } finally {
+                    responseBody.close();
+                }
+                post(call, callback, success);
+            }
+        });
+
+        return call;
+    }
+
+    private static void drain(BufferedSource source) throws IOException {
+        Buffer buffer = new Buffer();
+        while (source.read(buffer, READ_BUFFER_SIZE) != -1) {
+            buffer.clear();
+        }
+    }
+
+    private static void post(final Call call, final Callback callback, final boolean success) {
+        if (call.isCanceled()) return;
+
+        sMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (call.isCanceled()) return;
+
+                if (success) {
+                    callback.onSuccess();
+                } else {
+                    callback.onError();
+                }
+            }
+        });
+    }
+
+    /**
+     * Callback for the result of a download.
+     */
+    interface Callback {
+
+        /**
+         * Called when the image has been downloaded into the disk cache.
+         */
+        void onSuccess();
+
+        /**
+         * Called when the image could not be downloaded.
+         */
+        void onError();
+
+    }
+
+}
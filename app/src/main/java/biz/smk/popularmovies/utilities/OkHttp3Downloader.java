@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.utilities;
+
+import android.net.Uri;
+
+import com.squareup.picasso.Downloader;
+import com.squareup.picasso.NetworkPolicy;
+
+import java.io.IOException;
+
+import okhttp3.CacheControl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+
+/**
+ * Picasso downloader that uses an OkHttp 3 client. Picasso 2.5.2 only knows how to use OkHttp 2,
+ * so without this downloader Picasso would open its own connections instead of sharing the
+ * connection pool of the clients from HttpClients.
+ */
+public class OkHttp3Downloader implements Downloader {
+
+    private final OkHttpClient mClient;
+
+    /**
+     * Initializes a new downloader.
+     *
+     * @param client The OkHttp 3 client to use for downloads.
+     */
+    public OkHttp3Downloader(OkHttpClient client) {
+        mClient = client;
+    }
+
+    /**
+     * Downloads the image with the given URI, respecting Picasso's network policy.
+     *
+     * @param uri {@inheritDoc}
+     * @param networkPolicy {@inheritDoc}
+     * @return {@inheritDoc}
+     * @throws IOException {@inheritDoc}
+     */
+    @Override
+    public Response load(Uri uri, int networkPolicy) throws IOException {
+        CacheControl cacheControl = null;
+        if (networkPolicy != 0) {
+            if (NetworkPolicy.isOfflineOnly(networkPolicy)) {
+                cacheControl = CacheControl.FORCE_CACHE;
+            } else {
+                CacheControl.Builder builder = new CacheControl.Builder();
+                if (!NetworkPolicy.shouldReadFromDiskCache(networkPolicy)) builder.noCache();
+                if (!NetworkPolicy.shouldWriteToDiskCache(networkPolicy)) builder.noStore();
+                cacheControl = builder.build();
+            }
+        }
+
+        Request.Builder requestBuilder = new Request.Builder().url(uri.toString());
+        if (cacheControl != null) requestBuilder.cacheControl(cacheControl);
+
+        okhttp3.Response response = mClient.newCall(requestBuilder.build()).execute();
+        int responseCode = response.code();
+        if (responseCode >= 300) {
+            response.body().close();
+            throw new ResponseException(responseCode + " " + response.message(), networkPolicy,
+                    responseCode);
+        }
+
+        boolean fromCache = response.cacheResponse() != null;
+        ResponseBody responseBody = response.body();
+
+        return new Response(responseBody.byteStream(), fromCache, responseBody.contentLength());
+    }
+
+    /**
+     * Does nothing - the client is shared and must not be shut down by Picasso.
+     */
+    @Override
+    public void shutdown() {}
+
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.utilities;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.util.Log;
+
+import com.squareup.picasso.LruCache;
+import com.squareup.picasso.Picasso;
+
+import okhttp3.Cache;
+
+/**
+ * The image pipeline behind PosterLoader, with two cache tiers:
+ *
+ * - Memory: a LRU cache of decoded (resized) bitmaps, bounded by their byte size.
+ * - Disk: the disk cache of the image client from HttpClients, bounded by its byte size. Poster
+ *   URIs consist of the size path element (width) and the poster path, so the cache is keyed by
+ *   poster path and width.
+ *
+ * Posters are decoded by Picasso's own network request handler, which subsamples resized
+ * requests (fit()) to the target size and decodes with the config of the request (e.g. RGB_565).
+ * Decode buffers are not pooled: Picasso transforms the results of resized requests and recycles
+ * the decoded bitmaps, so they could never be returned to a pool.
+ *
+ * The Picasso singleton is built with buildPicasso(). The hit ratios of the tiers can be read for
+ * monitoring and are logged with logHitRatios().
+ */
+public class PosterImagePipeline {
+
+    private static final String TAG = "PosterImagePipeline";
+
+    /**
+     * Fraction of the app's memory class used for the memory cache.
+     */
+    private static final int MEMORY_CACHE_DIVISOR = 8;
+
+    private static PosterImagePipeline sInstance;
+
+    private final LruCache mMemoryCache;
+
+    /**
+     * Returns the app-wide image pipeline.
+     *
+     * @param context Context (for reading the memory class).
+     * @return The image pipeline.
+     */
+    public static synchronized PosterImagePipeline get(Context context) {
+        if (sInstance == null) {
+            ActivityManager activityManager =
+                    (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+            long memoryClassBytes = activityManager.getMemoryClass() * 1024L * 1024L;
+
+            sInstance = new PosterImagePipeline((int) (memoryClassBytes / MEMORY_CACHE_DIVISOR));
+        }
+
+        return sInstance;
+    }
+
+    private PosterImagePipeline(int memoryCacheMaxSize) {
+        mMemoryCache = new LruCache(memoryCacheMaxSize);
+    }
+
+    /**
+     * Builds a Picasso instance that uses this pipeline: the memory cache and the image client for
+     * downloads (and thus its disk cache).
+     *
+     * @param context Context.
+     * @return The Picasso instance.
+     */
+    public Picasso buildPicasso(Context context) {
+        return new Picasso.Builder(context)
+                .memoryCache(mMemoryCache)
+                .downloader(new OkHttp3Downloader(HttpClients.getImageClient()))
+                .build();
+    }
+
+    /**
+     * Returns the share of memory cache lookups that found a bitmap.
+     *
+     * @return The hit ratio (0 if there have been no lookups).
+     */
+    public float getMemoryCacheHitRatio() {
+        return getHitRatio(mMemoryCache.hitCount(), mMemoryCache.missCount());
+    }
+
+    /**
+     * Returns the share of image requests that were served from the disk cache.
+     *
+     * @return The hit ratio (0 if there have been no requests).
+     */
+    public float getDiskCacheHitRatio() {
+        Cache cache = HttpClients.getImageClient().cache();
+        if (cache == null) return 0;
+
+        int hitCount = cache.hitCount();
+        return getHitRatio(hitCount, cache.requestCount() - hitCount);
+    }
+
+    /**
+     * Logs the hit ratios of both tiers.
+     */
+    public void logHitRatios() {
+        Log.d(TAG, "Hit ratios: memory cache " + getMemoryCacheHitRatio() + ", disk cache " +
+                getDiskCacheHitRatio());
+    }
+
+    private static float getHitRatio(int hitCount, int missCount) {
+        int count = hitCount + missCount;
+        return count > 0 ? (float) hitCount / count : 0;
+    }
+
+}
@@ -5,19 +5,18 @@
 package biz.smk.popularmovies.utilities;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.net.Uri;
-import android.support.annotation.NonNull;
 import android.util.Log;
 import android.widget.ImageView;
 
 import com.squareup.picasso.Picasso;
+import com.squareup.picasso.RequestCreator;
 
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.TreeSet;
 
 import biz.smk.popularmovies.tmdbapi.TmdbApiConfiguration;
+import okhttp3.Call;
 import rx.Single;
 import rx.Subscription;
 import rx.android.schedulers.AndroidSchedulers;
@@ -31,24 +30,22 @@ public class PosterLoader {
 
     private static final String TAG = "PosterLoader";
 
-    /**
-     * Holds, for each poster path, all full (width dependent) URIs of poster images which already
-     * have been successfully downloaded by Picasso (and thus cached).
-     * The key is the poster path, the value is a TreeSet of PosterUri objects. A TreeSet is
-     * naturally sorted. PosterUri implements natural sort order (with compareTo) so that the URLs
-     * are sorted by increasing width.
-     */
-    private static final Map<String, TreeSet<PosterUri>> sCachedPostersUris = new HashMap<>();
-
     private final Context mContext;
     private final String mPosterPath;
     private final int mPosterWidthPx;
     private final ImageView mPosterView;
     private final Callback mCallback;
+    private final Bitmap.Config mBitmapConfig;
 
     private Subscription mPosterUriSubscription;
+    private Call mPosterDownload;
     private Date mStartDate;
 
+    // State of progressive loading (see loadProgressively()).
+    private boolean mPreviewShown;
+    private boolean mPreviewFailed;
+    private boolean mPosterDownloadFailed;
+
     /**
      * Initializes a new PosterLoader for loading a poster into an ImageView with Picasso.
      *
@@ -63,11 +60,44 @@ public class PosterLoader {
      */
     public PosterLoader(Context context, String posterPath, int posterWidthPx, ImageView posterView,
                         Callback callback) {
+        this(context, posterPath, posterWidthPx, posterView, callback, null);
+    }
+
+    /**
+     * Initializes a new PosterLoader for loading a poster into an ImageView with Picasso, decoding
+     * the poster with the given bitmap config. Posters are opaque, so RGB_565 can be used to halve
+     * the memory of the bitmaps where the lower color depth is acceptable (e.g. small posters in
+     * a grid).
+     *
+     * @param context Android context for Picasso.with(context).
+     * @param posterPath Poster path, as returned from TMDb API in the movie details (without base
+     *                   URL).
+     * @param posterWidthPx The desired poster width (see above).
+     * @param posterView The image view into which the poster shall be loaded by Picasso.
+     * @param callback Callback with success and error methods.
+     * @param bitmapConfig The bitmap config (or null for full quality, i.e. ARGB_8888).
+     */
+    public PosterLoader(Context context, String posterPath, int posterWidthPx, ImageView posterView,
+                        Callback callback, Bitmap.Config bitmapConfig) {
         mContext = context;
         mPosterPath = posterPath;
         mPosterWidthPx = posterWidthPx;
         mPosterView = posterView;
         mCallback = callback;
+        mBitmapConfig = bitmapConfig;
+    }
+
+    /**
+     * Returns the poster path in the form that is appended to poster base URIs: with a leading
+     * slash (as returned by the TMDb API). Movie details are normalized with this once when they
+     * are received, so that building a poster URI is a plain string concatenation.
+     *
+     * @param posterPath The poster path (may be null).
+     * @return The normalized poster path or null.
+     */
+    public static String normalizePosterPath(String posterPath) {
+        if (posterPath == null || posterPath.startsWith("/")) return posterPath;
+        return "/" + posterPath;
     }
 
     /**
@@ -78,6 +108,11 @@ public class PosterLoader {
             mPosterUriSubscription.unsubscribe();
         }
 
+        if (mPosterDownload != null) {
+            mPosterDownload.cancel();
+            mPosterDownload = null;
+        }
+
         Picasso.with(mContext).cancelTag(this);
     }
 
@@ -86,43 +121,34 @@ public class PosterLoader {
      * width >= posterWidthPx has already been successfully downloaded (and thus cached) by Picasso,
      * it will be used. Otherwise the smallest available poster image with a width >= posterWidthPx
      * will be (down)loaded.
+     *
+     * In the latter case the poster is loaded progressively: a preview is shown, which is the
+     * largest already downloaded smaller image of the poster or (if there is none) the poster at
+     * the smallest available width. The poster at the requested width is downloaded at the same
+     * time and replaces the preview once it is there. On slow networks this means the user only
+     * waits for a small image to be downloaded (or for none at all).
      */
     public void loadPoster() {
-        // Callback for successful retrieval of the PosterUri.
-        final Action1<PosterUri> onGetPosterUriSuccess = new Action1<PosterUri>() {
+        // Callback for successful retrieval of the PosterUris.
+        final Action1<PosterUris> onGetPosterUrisSuccess = new Action1<PosterUris>() {
             @Override
-            public void call(final PosterUri posterUri) {
-                Log.v(TAG, prepLogMsg("loadPoster: got poster URI: " + posterUri.uri + "(width=" +
-                        posterUri.width + ")"));
-
-                Picasso.with(mContext)
-                        .load(posterUri.uri)
-                        .fit()
-                        .tag(PosterLoader.this)
-                        .into(mPosterView, new com.squareup.picasso.Callback() {
-                            @Override
-                            public void onSuccess() {
-                                Log.v(TAG, prepLogMsg("loadPoster: picasso successfully loaded " +
-                                        "poster into view"));
+            public void call(PosterUris posterUris) {
+                Log.v(TAG, prepLogMsg("loadPoster: got poster URI: " + posterUris.poster.uri +
+                        "(width=" + posterUris.poster.width + ")"));
 
-                                addPosterUriToCache(mPosterPath, posterUri, PosterLoader.this);
-                                mCallback.onSuccess();
-                            }
+                if (posterUris.preview != null) {
+                    Log.v(TAG, prepLogMsg("loadPoster: got preview URI: " +
+                            posterUris.preview.uri + "(width=" + posterUris.preview.width + ")"));
 
-                            @Override
-                            public void onError() {
-                                Log.v(TAG, prepLogMsg("loadPoster: picasso failed to load poster " +
-                                        "into view"));
-
-                                mCallback.onError(new RuntimeException("Picasso failed to load " +
-                                        "the poster (poster path: \"" + mPosterPath + "\")."));
-                            }
-                        });
+                    loadProgressively(posterUris.preview, posterUris.poster);
+                } else {
+                    loadFullPoster(posterUris.poster, false);
+                }
             }
         };
 
         // Callback for errors during PosterUri retrieval.
-        final Action1<Throwable> onGetPosterUriError = new Action1<Throwable>() {
+        final Action1<Throwable> onGetPosterUrisError = new Action1<Throwable>() {
             @Override
             public void call(Throwable throwable) {
                 mCallback.onError(throwable);
@@ -132,38 +158,180 @@ public class PosterLoader {
         mStartDate = new Date();
         Log.d(TAG, prepLogMsg("loading poster"));
 
-        mPosterUriSubscription = getPosterUri()
+        mPosterUriSubscription = getPosterUris()
                 .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(onGetPosterUriSuccess, onGetPosterUriError);
+                .subscribe(onGetPosterUrisSuccess, onGetPosterUrisError);
+    }
+
+    /**
+     * Loads the preview into the ImageView and, in parallel, downloads the poster at the requested
+     * width into the disk cache (without decoding it). Once the poster has been downloaded, it is
+     * loaded into the ImageView from the cache (replacing the preview, or the pending request for
+     * the preview if the poster was faster). If the preview cannot be loaded, the poster is shown
+     * without it.
+     *
+     * cancel() cancels both the preview request and the download.
+     *
+     * @param previewUri The PosterUri of the preview.
+     * @param posterUri The PosterUri of the poster at the requested width.
+     */
+    private void loadProgressively(final PosterUri previewUri, final PosterUri posterUri) {
+        mPreviewShown = false;
+        mPreviewFailed = false;
+        mPosterDownloadFailed = false;
+
+        // The poster is only downloaded here - loadFullPoster() decodes it at the view size.
+        mPosterDownload = ImageCacheWarmer.warm(posterUri.uri.toString(),
+                new ImageCacheWarmer.Callback() {
+                    @Override
+                    public void onSuccess() {
+                        Log.v(TAG, prepLogMsg("loadProgressively: successfully downloaded " +
+                                "poster"));
+
+                        mPosterDownload = null;
+                        addPosterUriToCache(mPosterPath, posterUri, PosterLoader.this);
+                        loadFullPoster(posterUri, mPreviewShown);
+                    }
+
+                    @Override
+                    public void onError() {
+                        Log.v(TAG, prepLogMsg("loadProgressively: failed to download poster"));
+
+                        mPosterDownload = null;
+                        mPosterDownloadFailed = true;
+                        if (mPreviewFailed) onProgressiveLoadingError();
+                    }
+                });
+
+        createRequest(previewUri)
+                .into(mPosterView, new com.squareup.picasso.Callback() {
+                    @Override
+                    public void onSuccess() {
+                        Log.v(TAG, prepLogMsg("loadProgressively: picasso successfully loaded " +
+                                "preview into view"));
+
+                        mPreviewShown = true;
+                        addPosterUriToCache(mPosterPath, previewUri, PosterLoader.this);
+                        mCallback.onSuccess();
+                    }
+
+                    @Override
+                    public void onError() {
+                        Log.v(TAG, prepLogMsg("loadProgressively: picasso failed to load " +
+                                "preview into view"));
+
+                        mPreviewFailed = true;
+                        if (mPosterDownloadFailed) onProgressiveLoadingError();
+                    }
+                });
+    }
+
+    /**
+     * Reports an error when neither the preview nor the poster could be loaded progressively.
+     */
+    private void onProgressiveLoadingError() {
+        mCallback.onError(new RuntimeException("Picasso failed to load the poster and its " +
+                "preview (poster path: \"" + mPosterPath + "\")."));
     }
 
     /**
-     * Returns a full poster URI for mPosterPath and mPosterWidthPx (either a cached one or a new
-     * one).
+     * Loads the poster at the requested width into the ImageView.
      *
-     * @return A Single which resolves to a poster URI for mPosterPath and mPosterWidthPx.
+     * @param posterUri The PosterUri.
+     * @param previewShown Whether a preview is already shown in the ImageView. If so, the preview
+     *                     is kept until the poster replaces it (or if the poster fails to load),
+     *                     and the callback has already been called.
      */
-    private Single<PosterUri> getPosterUri() {
-        PosterUri posterUri = getPosterUriFromCache(mPosterPath, mPosterWidthPx, this);
-
-        if (posterUri != null) {
-            return Single.just(posterUri);
-        } else {
-            Func1<TmdbApiConfiguration.PosterBaseUri, PosterUri> posterBaseUriToPosterUri =
-                    new Func1<TmdbApiConfiguration.PosterBaseUri, PosterUri>() {
-                @Override
-                public PosterUri call(TmdbApiConfiguration.PosterBaseUri posterBaseUri) {
-                    Log.v(TAG, prepLogMsg("getPosterUri: received poster base URI from TMDb API " +
-                            "configuration: " + posterBaseUri.uri + "(width=" +
-                            posterBaseUri.width + ")"));
-
-                    return new PosterUri(posterBaseUri, mPosterPath);
+    private void loadFullPoster(final PosterUri posterUri, final boolean previewShown) {
+        RequestCreator request = createRequest(posterUri);
+
+        if (previewShown) request.noPlaceholder();
+
+        request.into(mPosterView, new com.squareup.picasso.Callback() {
+            @Override
+            public void onSuccess() {
+                Log.v(TAG, prepLogMsg("loadFullPoster: picasso successfully loaded poster into " +
+                        "view"));
+
+                addPosterUriToCache(mPosterPath, posterUri, PosterLoader.this);
+                if (!previewShown) mCallback.onSuccess();
+            }
+
+            @Override
+            public void onError() {
+                Log.v(TAG, prepLogMsg("loadFullPoster: picasso failed to load poster into view"));
+
+                if (!previewShown) {
+                    mCallback.onError(new RuntimeException("Picasso failed to load the poster " +
+                            "(poster path: \"" + mPosterPath + "\")."));
                 }
-            };
+            }
+        });
+    }
+
+    /**
+     * Creates a Picasso request for the given PosterUri that fits the image to the ImageView. The
+     * image pipeline decodes it directly at (about) the size of the view, with mBitmapConfig.
+     *
+     * @param posterUri The PosterUri.
+     * @return The request.
+     */
+    private RequestCreator createRequest(PosterUri posterUri) {
+        RequestCreator request = Picasso.with(mContext)
+                .load(posterUri.uri)
+                .fit()
+                .tag(this);
+
+        if (mBitmapConfig != null) request.config(mBitmapConfig);
+
+        return request;
+    }
+
+    /**
+     * Returns the poster URI for mPosterPath and mPosterWidthPx together with the URI of a
+     * preview, if the poster is not cached yet (see loadPoster()).
+     *
+     * @return A Single which resolves to the PosterUris.
+     */
+    private Single<PosterUris> getPosterUris() {
+        final PosterUri cachedPosterUri = getPosterUriFromCache(mPosterPath, mPosterWidthPx, this);
 
-            return TmdbApiConfiguration.getPosterBaseUri(mPosterWidthPx)
-                    .map(posterBaseUriToPosterUri);
+        if (cachedPosterUri != null) {
+            return Single.just(new PosterUris(cachedPosterUri, null));
         }
+
+        Func1<TmdbApiConfiguration.PosterBaseUri, Single<PosterUris>> addPreviewUri =
+                new Func1<TmdbApiConfiguration.PosterBaseUri, Single<PosterUris>>() {
+            @Override
+            public Single<PosterUris> call(TmdbApiConfiguration.PosterBaseUri posterBaseUri) {
+                Log.v(TAG, prepLogMsg("getPosterUris: received poster base URI from TMDb API " +
+                        "configuration: " + posterBaseUri.uri + "(width=" + posterBaseUri.width +
+                        ")"));
+
+                final PosterUri posterUri = new PosterUri(posterBaseUri, mPosterPath);
+
+                PosterUri cachedPreviewUri = getPreviewUriFromCache(mPosterPath, posterUri.width);
+                if (cachedPreviewUri != null) {
+                    return Single.just(new PosterUris(posterUri, cachedPreviewUri));
+                }
+
+                // No smaller image has been downloaded: use the smallest available width.
+                return TmdbApiConfiguration.getPosterBaseUri(0)
+                        .map(new Func1<TmdbApiConfiguration.PosterBaseUri, PosterUris>() {
+                            @Override
+                            public PosterUris call(TmdbApiConfiguration.PosterBaseUri smallest) {
+                                if (smallest.width >= posterUri.width) {
+                                    return new PosterUris(posterUri, null);
+                                }
+                                return new PosterUris(posterUri,
+                                        new PosterUri(smallest, mPosterPath));
+                            }
+                        });
+            }
+        };
+
+        return TmdbApiConfiguration.getPosterBaseUri(mPosterWidthPx)
+                .flatMap(addPreviewUri);
     }
 
     private String prepLogMsg(String msg) {
@@ -173,56 +341,61 @@ public class PosterLoader {
     }
 
     /**
-     * Adds the given PosterUri to the cache (using mPosterPath as the key to find the right Set).
+     * Adds the given PosterUri to the poster width index.
      *
      * @param posterUri The PosterUri.
      */
-    private static synchronized void addPosterUriToCache(String posterPath, PosterUri posterUri,
-                                                         PosterLoader instance) {
-        TreeSet<PosterUri> cachedPostersUris = sCachedPostersUris.get(posterPath);
-        if (cachedPostersUris == null) {
-            cachedPostersUris = new TreeSet<>();
-            sCachedPostersUris.put(posterPath, cachedPostersUris);
-        }
-
+    private static void addPosterUriToCache(String posterPath, PosterUri posterUri,
+                                            PosterLoader instance) {
         Log.v(TAG, instance.prepLogMsg("addPosterUriToCache: adding poster URI to cache (width=" +
                 posterUri.width + ")"));
 
-        cachedPostersUris.add(posterUri);
+        PosterWidthIndex.get().add(posterPath, posterUri.width, posterUri.uri.toString());
     }
 
     /**
-     * Retrieves a poster URI from the cache. As only URIs of successfully downloaded images are
-     * cached, an URI returned from this function will be an URI of an image that is already cached
-     * by Picasso.
+     * Retrieves a poster URI from the poster width index. As only URIs of successfully downloaded
+     * images are in the index (and evicted images are removed from it), an URI returned from this
+     * function will be an URI of an image that is already cached.
      *
      * The returned URI will be for the smallest already downloaded image that has a width equal to
      * or grater than mPosterWidthPx.
      *
      * @return A PosterUri instance, or null if no adequate image has been downloaded so far.
      */
-    private static synchronized PosterUri getPosterUriFromCache(String posterPath,
-                                                                int posterWidthPx,
-                                                                PosterLoader instance) {
-        if (!sCachedPostersUris.containsKey(posterPath)) {
-            Log.v(TAG, instance.prepLogMsg("getPosterUriFromCache: no cached poster URIs found"));
+    private static PosterUri getPosterUriFromCache(String posterPath, int posterWidthPx,
+                                                   PosterLoader instance) {
+        PosterWidthIndex.CachedPoster cachedPoster =
+                PosterWidthIndex.get().find(posterPath, posterWidthPx);
+
+        if (cachedPoster == null) {
+            Log.v(TAG, instance.prepLogMsg("getPosterUriFromCache: no cached poster URI found " +
+                    "for the requested width"));
 
             return null;
         }
 
-        TreeSet<PosterUri> cachedPostersUris = sCachedPostersUris.get(posterPath);
-        for (PosterUri posterUri : cachedPostersUris) {
-            if (posterUri.width >= posterWidthPx) {
-                Log.v(TAG, instance.prepLogMsg("getPosterUriFromCache: found cached poster URI " +
-                        "(width=" + posterUri.width + ")"));
-
-                return posterUri;
-            }
-        }
+        Log.v(TAG, instance.prepLogMsg("getPosterUriFromCache: found cached poster URI " +
+                "(width=" + cachedPoster.width + ")"));
 
-        Log.v(TAG, instance.prepLogMsg("getPosterUriFromCache: no cached poster URI found for " +
-                "the requested width"));
+        return new PosterUri(cachedPoster);
+    }
 
+    /**
+     * Retrieves the URI of the largest already downloaded image of the given poster that is
+     * smaller than maxWidth from the poster width index.
+     *
+     * @return A PosterUri instance, or null if no smaller image has been downloaded so far.
+     */
+    private static PosterUri getPreviewUriFromCache(String posterPath, int maxWidth) {
+        PosterWidthIndex.CachedPoster[] cachedPosters =
+                PosterWidthIndex.get().getCachedPosters(posterPath);
+        if (cachedPosters == null) return null;
+
+        // The cached posters are sorted by increasing width.
+        for (int i = cachedPosters.length - 1; i >= 0; i--) {
+            if (cachedPosters[i].width < maxWidth) return new PosterUri(cachedPosters[i]);
+        }
         return null;
     }
 
@@ -232,12 +405,14 @@ public class PosterLoader {
     public interface Callback {
 
         /**
-         * Called after Picasso successfully loaded the poster into the ImageView.
+         * Called after Picasso successfully loaded the poster into the ImageView. If the poster
+         * is loaded progressively, this is called as soon as the preview is shown (the poster at
+         * the requested width replaces it later, or the preview stays if that fails).
          */
         void onSuccess();
 
         /**
-         * Called on errors.
+         * Called on errors (if neither the poster nor a preview could be loaded).
          *
          * @param throwable The error cause.
          */
@@ -245,33 +420,41 @@ public class PosterLoader {
 
     }
 
+    /**
+     * Class that holds the PosterUri of the poster at the requested width together with the
+     * PosterUri of its preview.
+     */
+    private static class PosterUris {
+
+        private final PosterUri poster;
+        private final PosterUri preview; // null if no preview shall be shown
+
+        private PosterUris(PosterUri poster, PosterUri preview) {
+            this.poster = poster;
+            this.preview = preview;
+        }
+
+    }
+
     /**
      * Class that holds a poster URI together with the corresponding poster width.
      */
-    private static class PosterUri implements Comparable<PosterUri> {
+    private static class PosterUri {
 
         private final Uri uri;
         private final int width;
 
         private PosterUri(TmdbApiConfiguration.PosterBaseUri posterBaseUri, String posterPath) {
-            uri = posterBaseUri.uri.buildUpon()
-                    .appendEncodedPath(posterPath)
-                    .build();
+            // Poster paths are normalized when the movie details are received, so appending the
+            // (encoded) path does not need a Uri.Builder.
+            uri = Uri.parse(posterBaseUri.uriString + normalizePosterPath(posterPath));
 
             this.width = posterBaseUri.width;
         }
 
-        /**
-         * Compares two PosterUri objects; used for natural sorting in the TreeSets. For efficiency
-         * reasons this only compares the width. This works as expected as long as only PosterUri
-         * objects with the same uri are stored in the same TreeSet.
-         *
-         * @param o {@inheritDoc}
-         * @return {@inheritDoc}
-         */
-        @Override
-        public int compareTo(@NonNull PosterUri o) {
-            return width == o.width ? 0 : (width < o.width ? -1 : 1);
+        private PosterUri(PosterWidthIndex.CachedPoster cachedPoster) {
+            uri = Uri.parse(cachedPoster.uri);
+            width = cachedPoster.width;
         }
 
     }
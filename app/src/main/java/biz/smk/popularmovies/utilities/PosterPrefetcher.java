@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.utilities;
+
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import biz.smk.popularmovies.tmdbapi.TmdbApiConfiguration;
+import okhttp3.Call;
+import rx.Subscription;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.functions.Action1;
+
+/**
+ * Class for prefetching TMDb movie posters into the image cache before they are shown, so that
+ * PosterLoader finds them already downloaded. The posters are fetched at the width that
+ * PosterLoader will request for the poster views (the width is set once and resolved to a poster
+ * base URI).
+ *
+ * Prefetched images are only downloaded into the disk cache of the image client
+ * (ImageCacheWarmer), they are not decoded: PosterLoader decodes the images at the size of the
+ * poster views, so bitmaps of the original images would never be used. Successfully prefetched
+ * images are added to the poster width index.
+ *
+ * All methods must be called from the main thread.
+ */
+public class PosterPrefetcher {
+
+    private static final String TAG = "PosterPrefetcher";
+
+    private final Map<String, Call> mPendingCalls = new HashMap<>();
+
+    private int mPosterWidthPx;
+    private TmdbApiConfiguration.PosterBaseUri mPosterBaseUri;
+    private Subscription mPosterBaseUriSubscription;
+
+    /**
+     * Sets the desired poster width (the width of the poster views). Posters are prefetched at the
+     * smallest available width equal to or bigger than this. Until the poster base URI for the
+     * width has been resolved, prefetch() does nothing.
+     *
+     * @param posterWidthPx The desired poster width.
+     */
+    public void setPosterWidth(final int posterWidthPx) {
+        if (posterWidthPx == mPosterWidthPx) return;
+
+        if (mPosterBaseUriSubscription != null) {
+            mPosterBaseUriSubscription.unsubscribe();
+        }
+
+        mPosterWidthPx = posterWidthPx;
+        mPosterBaseUri = null;
+
+        mPosterBaseUriSubscription = TmdbApiConfiguration.getPosterBaseUri(posterWidthPx)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<TmdbApiConfiguration.PosterBaseUri>() {
+                    @Override
+                    public void call(TmdbApiConfiguration.PosterBaseUri posterBaseUri) {
+                        mPosterBaseUri = posterBaseUri;
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        Log.w(TAG, "Could not get poster base URI: " + throwable.toString());
+
+                        // Try again on the next call.
+                        if (mPosterWidthPx == posterWidthPx) mPosterWidthPx = 0;
+                    }
+                });
+    }
+
+    /**
+     * Prefetches the given poster unless it has already been downloaded at an adequate width or
+     * is being prefetched.
+     *
+     * @param posterPath The poster path (may be null).
+     */
+    public void prefetch(final String posterPath) {
+        if (posterPath == null || mPosterBaseUri == null) return;
+        if (PosterWidthIndex.get().find(posterPath, mPosterWidthPx) != null) return;
+
+        final int width = mPosterBaseUri.width;
+        final String uri = mPosterBaseUri.uriString + PosterLoader.normalizePosterPath(posterPath);
+        if (mPendingCalls.containsKey(uri)) return;
+
+        mPendingCalls.put(uri, ImageCacheWarmer.warm(uri, new ImageCacheWarmer.Callback() {
+            @Override
+            public void onSuccess() {
+                mPendingCalls.remove(uri);
+                PosterWidthIndex.get().add(posterPath, width, uri);
+            }
+
+            @Override
+            public void onError() {
+                mPendingCalls.remove(uri);
+            }
+        }));
+    }
+
+    /**
+     * Cancels all pending prefetch requests (e.g. when the scroll direction changes).
+     */
+    public void cancel() {
+        for (Call call : mPendingCalls.values()) {
+            call.cancel();
+        }
+        mPendingCalls.clear();
+    }
+
+}
@@ -0,0 +1,414 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.utilities;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import biz.smk.popularmovies.Application;
+import okhttp3.Cache;
+import rx.Scheduler;
+import rx.functions.Action0;
+import rx.schedulers.Schedulers;
+
+/**
+ * Index of the poster images that have already been downloaded (and are thus in the image cache):
+ * for each poster path, the widths and URIs of the downloaded images. PosterLoader uses it to load
+ * an already cached image instead of downloading the poster at another width.
+ *
+ * The index is bounded (least recently used poster paths are dropped) and lock-striped: poster
+ * paths are distributed over STRIPE_COUNT independently locked LRU maps, so that lookups for
+ * different posters rarely wait for each other.
+ *
+ * The index is persisted to a file next to the image cache, so it survives process death. It is
+ * loaded in the background on first use (until then, lookups miss) and saved a few seconds after
+ * it has been changed. When loading, entries whose images are no longer in the OkHttp image cache
+ * (evicted) are removed. Listing the cache is too expensive to repeat on every save, so entries of
+ * images that are evicted later stay in the index until the next start. Such a stale entry is
+ * treated like an eviction: PosterLoader requests the image by its URI, which downloads (and
+ * caches) it again.
+ */
+public class PosterWidthIndex {
+
+    private static final String TAG = "PosterWidthIndex";
+
+    private static final String FILE_NAME = "poster-width-index";
+    private static final int FILE_VERSION = 1;
+
+    private static final int STRIPE_COUNT = 16; // must be a power of two
+    private static final int MAX_POSTER_PATHS = 2000;
+    private static final long SAVE_DELAY = 5; // seconds
+
+    private static PosterWidthIndex sInstance;
+
+    private final Stripe[] mStripes = new Stripe[STRIPE_COUNT];
+    private final File mFile;
+    private final AtomicBoolean mSaveScheduled = new AtomicBoolean();
+
+    /**
+     * Returns the app-wide index (its persisted state is loaded in the background on first use).
+     *
+     * @return The index.
+     */
+    public static synchronized PosterWidthIndex get() {
+        if (sInstance == null) {
+            sInstance = new PosterWidthIndex(MAX_POSTER_PATHS,
+                    new File(Application.getContext().getCacheDir(), FILE_NAME));
+            sInstance.loadInBackground();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Initializes a new, empty index.
+     *
+     * @param maxPosterPaths The maximum number of poster paths in the index.
+     * @param file The file for persisting the index (or null if it shall not be persisted).
+     */
+    PosterWidthIndex(int maxPosterPaths, File file) {
+        int maxPosterPathsPerStripe = Math.max(1, maxPosterPaths / STRIPE_COUNT);
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            mStripes[i] = new Stripe(maxPosterPathsPerStripe);
+        }
+        mFile = file;
+    }
+
+    /**
+     * Adds a downloaded poster image to the index.
+     *
+     * @param posterPath The poster path.
+     * @param width The width of the image.
+     * @param uri The URI of the image.
+     */
+    public void add(String posterPath, int width, String uri) {
+        Stripe stripe = getStripe(posterPath);
+        synchronized (stripe) {
+            stripe.put(posterPath, with(stripe.get(posterPath), new CachedPoster(width, uri)));
+        }
+        scheduleSave();
+    }
+
+    /**
+     * Returns the smallest downloaded image of the given poster with a width equal to or greater
+     * than minWidth.
+     *
+     * @param posterPath The poster path.
+     * @param minWidth The minimum width.
+     * @return The image or null if no adequate image has been downloaded.
+     */
+    public CachedPoster find(String posterPath, int minWidth) {
+        CachedPoster[] cachedPosters = getCachedPosters(posterPath);
+        if (cachedPosters == null) return null;
+
+        for (CachedPoster cachedPoster : cachedPosters) {
+            if (cachedPoster.width >= minWidth) return cachedPoster;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the images of the given poster that have been downloaded.
+     *
+     * @param posterPath The poster path.
+     * @return The images sorted by increasing width (must not be modified), or null.
+     */
+    public CachedPoster[] getCachedPosters(String posterPath) {
+        Stripe stripe = getStripe(posterPath);
+        synchronized (stripe) {
+            return stripe.get(posterPath);
+        }
+    }
+
+    /**
+     * Returns the number of poster paths in the index.
+     *
+     * @return The number of poster paths.
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : mStripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Removes all images whose URIs are not in the given set of cached URIs.
+     *
+     * @param cachedUris The URIs of all images in the image cache.
+     */
+    void retainAll(Set<String> cachedUris) {
+        for (Stripe stripe : mStripes) {
+            synchronized (stripe) {
+                Iterator<Map.Entry<String, CachedPoster[]>> iterator =
+                        stripe.entrySet().iterator();
+
+                while (iterator.hasNext()) {
+                    Map.Entry<String, CachedPoster[]> entry = iterator.next();
+                    List<CachedPoster> retainedPosters = new ArrayList<>();
+
+                    for (CachedPoster cachedPoster : entry.getValue()) {
+                        if (cachedUris.contains(cachedPoster.uri)) {
+                            retainedPosters.add(cachedPoster);
+                        }
+                    }
+
+                    if (retainedPosters.isEmpty()) {
+                        iterator.remove();
+                    } else if (retainedPosters.size() < entry.getValue().length) {
+                        entry.setValue(retainedPosters.toArray(
+                                new CachedPoster[retainedPosters.size()]));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the index to the given stream.
+     *
+     * @param outputStream The stream (is not closed).
+     * @throws IOException On write errors.
+     */
+    void writeTo(OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(outputStream);
+        out.writeInt(FILE_VERSION);
+
+        for (Stripe stripe : mStripes) {
+            Map<String, CachedPoster[]> snapshot;
+            synchronized (stripe) {
+                snapshot = new LinkedHashMap<>(stripe);
+            }
+
+            // Entries are written from least to most recently used, so reading restores the order.
+            for (Map.Entry<String, CachedPoster[]> entry : snapshot.entrySet()) {
+                out.writeBoolean(true);
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().length);
+                for (CachedPoster cachedPoster : entry.getValue()) {
+                    out.writeInt(cachedPoster.width);
+                    out.writeUTF(cachedPoster.uri);
+                }
+            }
+        }
+
+        out.writeBoolean(false);
+        out.flush();
+    }
+
+    /**
+     * Reads entries written by writeTo() and adds them to the index. Images that are already in
+     * the index are kept.
+     *
+     * @param inputStream The stream (is not closed).
+     * @throws IOException On read errors or if the stream has an unknown format.
+     */
+    void readFrom(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        if (in.readInt() != FILE_VERSION) throw new IOException("Unknown file version");
+
+        while (in.readBoolean()) {
+            String posterPath = in.readUTF();
+            int count = in.readInt();
+
+            CachedPoster[] cachedPosters = new CachedPoster[count];
+            for (int i = 0; i < count; i++) {
+                cachedPosters[i] = new CachedPoster(in.readInt(), in.readUTF());
+            }
+
+            Stripe stripe = getStripe(posterPath);
+            synchronized (stripe) {
+                CachedPoster[] existingPosters = stripe.get(posterPath);
+                for (CachedPoster cachedPoster : cachedPosters) {
+                    existingPosters = with(existingPosters, cachedPoster);
+                }
+                stripe.put(posterPath, existingPosters);
+            }
+        }
+    }
+
+    private Stripe getStripe(String posterPath) {
+        int hash = posterPath.hashCode();
+        return mStripes[(hash ^ (hash >>> 16)) & (STRIPE_COUNT - 1)];
+    }
+
+    /**
+     * Returns a copy of the given (sorted) array with the given image added (or replacing an image
+     * with the same width).
+     */
+    private static CachedPoster[] with(CachedPoster[] cachedPosters, CachedPoster cachedPoster) {
+        if (cachedPosters == null) return new CachedPoster[] { cachedPoster };
+
+        int index = 0;
+        while (index < cachedPosters.length && cachedPosters[index].width < cachedPoster.width) {
+            index++;
+        }
+
+        if (index < cachedPosters.length && cachedPosters[index].width == cachedPoster.width) {
+            CachedPoster[] result = cachedPosters.clone();
+            result[index] = cachedPoster;
+            return result;
+        }
+
+        CachedPoster[] result = Arrays.copyOf(cachedPosters, cachedPosters.length + 1);
+        System.arraycopy(cachedPosters, index, result, index + 1, cachedPosters.length - index);
+        result[index] = cachedPoster;
+        return result;
+    }
+
+    private void loadInBackground() {
+        final Scheduler.Worker worker = Schedulers.io().createWorker();
+        worker.schedule(new Action0() {
+            @Override
+            public void call() {
+                try {
+                    load();
+                } finally {
+                    worker.unsubscribe();
+                }
+            }
+        });
+    }
+
+    private void scheduleSave() {
+        if (mFile == null || !mSaveScheduled.compareAndSet(false, true)) return;
+
+        final Scheduler.Worker worker = Schedulers.io().createWorker();
+        worker.schedule(new Action0() {
+            @Override
+            public void call() {
+                try {
+                    mSaveScheduled.set(false);
+                    save();
+                } finally {
+                    worker.unsubscribe();
+                }
+            }
+        }, SAVE_DELAY, TimeUnit.SECONDS);
+    }
+
+    private void load() {
+        if (mFile.exists()) {
+            InputStream in = null;
+            try {
+                in = new BufferedInputStream(new FileInputStream(mFile));
+                readFrom(in);
+            } catch (IOException e) {
+                Log.w(TAG, "Could not read poster width index", e);
+            } finally {
+                closeQuietly(in);
+            }
+        }
+
+        pruneEvictedImages();
+        Log.d(TAG, "Loaded poster width index: " + size() + " poster paths");
+    }
+
+    private void save() {
+        File tempFile = new File(mFile.getPath() + ".tmp");
+        OutputStream out = null;
+        try {
+            out = new BufferedOutputStream(new FileOutputStream(tempFile));
+            writeTo(out);
+            out.close();
+            out = null;
+
+            if (!tempFile.renameTo(mFile)) throw new IOException("Could not rename " + tempFile);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write poster width index", e);
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    /**
+     * Removes the images that have been evicted from the OkHttp image cache.
+     */
+    private void pruneEvictedImages() {
+        Cache cache = HttpClients.getImageClient().cache();
+        if (cache == null) return;
+
+        Set<String> cachedUris = new HashSet<>();
+        try {
+            Iterator<String> urls = cache.urls();
+            while (urls.hasNext()) {
+                cachedUris.add(urls.next());
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read image cache URLs", e);
+            return;
+        }
+
+        retainAll(cachedUris);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * A downloaded poster image: its width and URI.
+     */
+    public static class CachedPoster {
+
+        public final int width;
+        public final String uri;
+
+        CachedPoster(int width, String uri) {
+            this.width = width;
+            this.uri = uri;
+        }
+
+    }
+
+    /**
+     * One stripe of the index: an LRU map from poster path to the images of the poster (sorted by
+     * increasing width). Guarded by its own monitor.
+     */
+    private static class Stripe extends LinkedHashMap<String, CachedPoster[]> {
+
+        private final int mMaxSize;
+
+        private Stripe(int maxSize) {
+            super(16, 0.75f, true);
+            mMaxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedPoster[]> eldest) {
+            return size() > mMaxSize;
+        }
+
+    }
+
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.utilities;
+
+import android.support.v4.util.LruCache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import rx.Single;
+import rx.functions.Action1;
+import rx.functions.Func0;
+
+/**
+ * Keyed single-flight cache for RxJava Singles. Concurrent requests for the same key share one
+ * in-flight Single, and successful results are kept in a bounded LRU cache. Failed requests are
+ * not cached, so the next request for the key will be made again.
+ *
+ * @param <K> Type of the keys.
+ * @param <V> Type of the results.
+ */
+public class SingleFlightCache<K, V> {
+
+    private final LruCache<K, V> mResults;
+    private final Map<K, Single<V>> mInFlightRequests = new HashMap<>();
+
+    /**
+     * Initializes a new single-flight cache.
+     *
+     * @param maxResults The maximum number of successful results that are kept in memory.
+     */
+    public SingleFlightCache(int maxResults) {
+        mResults = new LruCache<>(maxResults);
+    }
+
+    /**
+     * Returns a Single that resolves to the result for the given key. If the result is cached, a
+     * Single with the cached result is returned. If there is a pending request for the key, its
+     * Single is returned. Otherwise a new request is created with the given factory.
+     *
+     * @param key The key.
+     * @param requestFactory Factory that creates the request Single for the key.
+     * @return Single that resolves to the result for the key.
+     */
+    public synchronized Single<V> get(final K key, Func0<Single<V>> requestFactory) {
+        V result = mResults.get(key);
+        if (result != null) {
+            return Single.just(result);
+        }
+
+        Single<V> request = mInFlightRequests.get(key);
+
+        if (request == null) {
+            Action1<V> storeResult = new Action1<V>() {
+                @Override
+                public void call(V result) {
+                    synchronized (SingleFlightCache.this) {
+                        mResults.put(key, result);
+                        mInFlightRequests.remove(key);
+                    }
+                }
+            };
+
+            Action1<Throwable> removeFailedRequest = new Action1<Throwable>() {
+                @Override
+                public void call(Throwable throwable) {
+                    synchronized (SingleFlightCache.this) {
+                        mInFlightRequests.remove(key);
+                    }
+                }
+            };
+
+            request = requestFactory.call()
+                    .doOnSuccess(storeResult)
+                    .doOnError(removeFailedRequest)
+                    .cache();
+
+            mInFlightRequests.put(key, request);
+        }
+
+        return request;
+    }
+
+    /**
+     * Returns the cached result for the given key without making a request.
+     *
+     * @param key The key.
+     * @return The cached result or null.
+     */
+    public synchronized V peek(K key) {
+        return mResults.get(key);
+    }
+
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.utilities;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe pool of canonical string instances, for values that repeat a lot (e.g. language
+ * codes and release dates of movies). Equal strings passed to get() are replaced by one shared
+ * instance, so the duplicates can be garbage collected.
+ *
+ * Unlike String.intern(), the pool is bounded: once it holds its maximum number of strings, new
+ * strings are returned as they are.
+ */
+public class StringPool {
+
+    private final int mMaxSize;
+    private final ConcurrentHashMap<String, String> mStrings = new ConcurrentHashMap<>();
+
+    /**
+     * Initializes a new pool.
+     *
+     * @param maxSize The maximum number of strings in the pool.
+     */
+    public StringPool(int maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Returns the pooled instance of the given string, adding the string to the pool if there is
+     * none yet.
+     *
+     * @param string The string (may be null).
+     * @return The pooled string, the given string if the pool is full, or null if string is null.
+     */
+    public String get(String string) {
+        if (string == null) return null;
+
+        String pooledString = mStrings.get(string);
+        if (pooledString != null) return pooledString;
+
+        if (mStrings.size() >= mMaxSize) return string;
+
+        pooledString = mStrings.putIfAbsent(string, string);
+        return pooledString != null ? pooledString : string;
+    }
+
+    /**
+     * Returns the number of strings in the pool.
+     *
+     * @return The number of pooled strings.
+     */
+    public int size() {
+        return mStrings.size();
+    }
+
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Helpers for the JVM benchmarks among the unit tests. Benchmarks take a while and their results
+ * depend on the machine, so they are skipped unless the unit tests run with -Dbenchmark=true
+ * (e.g. ./gradlew testDebugUnitTest -Dbenchmark=true). Benchmarks report their results in the
+ * messages of their assertions.
+ */
+public class Benchmarks {
+
+    private static final String PROPERTY = "benchmark";
+
+    /**
+     * Skips the calling test unless benchmarks are enabled.
+     */
+    public static void assumeEnabled() {
+        assumeTrue("Benchmarks only run with -D" + PROPERTY + "=true",
+                Boolean.getBoolean(PROPERTY));
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread, or -1 if the JVM does not
+     * support measuring it.
+     *
+     * @return The allocated bytes or -1.
+     */
+    public static long getAllocatedBytes() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threadMXBean)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     * Skips the calling test unless the JVM can measure allocated bytes.
+     */
+    public static void assumeAllocationsMeasurable() {
+        assumeTrue("The JVM cannot measure allocated bytes", getAllocatedBytes() >= 0);
+    }
+
+}
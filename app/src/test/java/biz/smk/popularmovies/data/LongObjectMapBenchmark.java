@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.data;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import biz.smk.popularmovies.Benchmarks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Benchmarks lookup latency and per-entry heap usage of LongObjectMap against HashMap for a movie
+ * details store sized like a long session (MOVIE_COUNT movies with TMDb-like IDs). Only runs with
+ * -Dbenchmark=true (see Benchmarks).
+ */
+public class LongObjectMapBenchmark {
+
+    private static final int MOVIE_COUNT = 20000;
+    private static final int LOOKUPS = 2000000;
+    private static final int ITERATIONS = 5;
+
+    private long[] mMovieIds;
+    private Object mValue;
+
+    @Before
+    public void setUp() {
+        Benchmarks.assumeEnabled();
+
+        mMovieIds = createMovieIds();
+        mValue = new Object();
+    }
+
+    @Test
+    public void lookupIsFasterThanHashMap() {
+        Map<Long, Object> hashMap = createHashMap();
+        LongObjectMap<Object> longObjectMap = createLongObjectMap();
+
+        long hashMapTime = Long.MAX_VALUE;
+        long longObjectMapTime = Long.MAX_VALUE;
+        int found = 0;
+
+        // Keep the best of a few runs (the first ones warm up the JIT).
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            int index = 0;
+            long startTime = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                index = (index + 7919) % MOVIE_COUNT;
+                if (hashMap.get(mMovieIds[index]) != null) found++;
+            }
+            hashMapTime = Math.min(hashMapTime, System.nanoTime() - startTime);
+
+            index = 0;
+            startTime = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                index = (index + 7919) % MOVIE_COUNT;
+                if (longObjectMap.get(mMovieIds[index]) != null) found++;
+            }
+            longObjectMapTime = Math.min(longObjectMapTime, System.nanoTime() - startTime);
+        }
+
+        assertEquals(2 * ITERATIONS * LOOKUPS, found);
+        assertTrue("Lookup (" + MOVIE_COUNT + " entries): HashMap<Long, V> " +
+                        hashMapTime / LOOKUPS + " ns, LongObjectMap<V> " +
+                        longObjectMapTime / LOOKUPS + " ns",
+                longObjectMapTime <= hashMapTime);
+    }
+
+    @Test
+    public void entriesTakeLessHeapThanInHashMap() {
+        Benchmarks.assumeAllocationsMeasurable();
+
+        long hashMapBytes = Long.MAX_VALUE;
+        long longObjectMapBytes = Long.MAX_VALUE;
+
+        // The maps are pre-sized, so the allocated bytes are the retained bytes (no garbage from
+        // resizing).
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            long allocatedBefore = Benchmarks.getAllocatedBytes();
+            createHashMap();
+            hashMapBytes = Math.min(hashMapBytes,
+                    Benchmarks.getAllocatedBytes() - allocatedBefore);
+
+            allocatedBefore = Benchmarks.getAllocatedBytes();
+            createLongObjectMap();
+            longObjectMapBytes = Math.min(longObjectMapBytes,
+                    Benchmarks.getAllocatedBytes() - allocatedBefore);
+        }
+
+        assertTrue("Heap per entry (" + MOVIE_COUNT + " entries): HashMap<Long, V> " +
+                        hashMapBytes / MOVIE_COUNT + " bytes, LongObjectMap<V> " +
+                        longObjectMapBytes / MOVIE_COUNT + " bytes",
+                longObjectMapBytes < hashMapBytes);
+    }
+
+    private Map<Long, Object> createHashMap() {
+        Map<Long, Object> hashMap = new HashMap<>(MOVIE_COUNT * 4 / 3 + 1);
+        for (long movieId : mMovieIds) {
+            hashMap.put(movieId, mValue);
+        }
+        return hashMap;
+    }
+
+    private LongObjectMap<Object> createLongObjectMap() {
+        LongObjectMap<Object> longObjectMap = new LongObjectMap<>(MOVIE_COUNT);
+        for (long movieId : mMovieIds) {
+            longObjectMap.put(movieId, mValue);
+        }
+        return longObjectMap;
+    }
+
+    /**
+     * Returns distinct IDs in the range of current TMDb movie IDs.
+     */
+    private static long[] createMovieIds() {
+        Random random = new Random(1);
+        LongObjectMap<Boolean> used = new LongObjectMap<>(MOVIE_COUNT);
+        long[] movieIds = new long[MOVIE_COUNT];
+
+        for (int i = 0; i < MOVIE_COUNT; i++) {
+            long movieId;
+            do {
+                movieId = 2 + random.nextInt(450000);
+            } while (used.put(movieId, Boolean.TRUE) != null);
+            movieIds[i] = movieId;
+        }
+
+        return movieIds;
+    }
+
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.data;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests LongObjectMap against HashMap.
+ */
+public class LongObjectMapTest {
+
+    @Test
+    public void behavesLikeHashMap() {
+        Random random = new Random(42);
+        LongObjectMap<Object> map = new LongObjectMap<>();
+        Map<Long, Object> reference = new HashMap<>();
+
+        for (int i = 0; i < 200000; i++) {
+            long key = random.nextInt(5000);
+            switch (random.nextInt(3)) {
+                case 0:
+                    Object value = new Object();
+                    assertSame(reference.put(key, value), map.put(key, value));
+                    break;
+                case 1:
+                    assertSame(reference.remove(key), map.remove(key));
+                    break;
+                default:
+                    assertSame(reference.get(key), map.get(key));
+            }
+            assertEquals(reference.size(), map.size());
+        }
+
+        for (Map.Entry<Long, Object> entry : reference.entrySet()) {
+            assertSame(entry.getValue(), map.get(entry.getKey()));
+        }
+        assertNull(map.get(-1));
+    }
+
+    @Test
+    public void copyIsIndependent() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        map.put(1, "a");
+
+        LongObjectMap<String> copy = map.copy();
+        copy.put(2, "b");
+        copy.remove(1);
+
+        assertEquals("a", map.get(1));
+        assertNull(map.get(2));
+        assertNull(copy.get(1));
+        assertEquals("b", copy.get(2));
+    }
+
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.data;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import biz.smk.popularmovies.tmdbapi.responseobjects.LazyMovieListingMovieDetails;
+import biz.smk.popularmovies.tmdbapi.responseobjects.MovieListingMovieDetails;
+import biz.smk.popularmovies.tmdbapi.responseobjects.ReadableMovieListingMovieDetails;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for MovieListingMovieDetailsColumns: the row views must return the same values as the
+ * beans the columns were built from (including null values), pooled strings must be shared and
+ * lazy rows must only be decoded once.
+ */
+public class MovieListingMovieDetailsColumnsTest {
+
+    @Test
+    public void rowsReturnValuesOfBeans() {
+        List<MovieListingMovieDetails> beans = new ArrayList<>();
+
+        for (int i = 0; i < 20; i++) {
+            MovieListingMovieDetails bean = new MovieListingMovieDetails();
+            bean.setId(1000L + i);
+            bean.setTitle("Title " + i);
+            bean.setOriginalTitle("Original title " + i);
+            bean.setOriginalLanguage(i % 2 == 0 ? "en" : "fr");
+            bean.setOverview("Overview " + i);
+            bean.setReleaseDate("2016-12-0" + (i % 9 + 1));
+            bean.setPosterPath("/poster" + i + ".jpg");
+            bean.setBackdropPath("/backdrop" + i + ".jpg");
+            bean.setPopularity(i * 1.5);
+            bean.setVoteAverage(i / 2.0);
+            bean.setVoteCount(i * 100);
+            bean.setAdult(i % 3 == 0);
+            bean.setVideo(i % 5 == 0);
+            bean.setGenreIds(i % 4 == 0 ? null : Arrays.asList(i, i + 1, i + 2));
+            beans.add(bean);
+        }
+
+        MovieListingMovieDetailsColumns columns = new MovieListingMovieDetailsColumns(beans);
+        assertEquals(beans.size(), columns.size());
+
+        for (int row = 0; row < columns.size(); row++) {
+            MovieListingMovieDetails bean = beans.get(row);
+            ReadableMovieListingMovieDetails view = columns.getRow(row);
+
+            assertEquals((long) bean.getId(), columns.getId(row));
+            assertEquals(bean.getId(), view.getId());
+            assertEquals(bean.getTitle(), view.getTitle());
+            assertEquals(bean.getOriginalTitle(), view.getOriginalTitle());
+            assertEquals(bean.getOriginalLanguage(), view.getOriginalLanguage());
+            assertEquals(bean.getOverview(), view.getOverview());
+            assertEquals(bean.getReleaseDate(), view.getReleaseDate());
+            assertEquals(bean.getParsedReleaseDate(), view.getParsedReleaseDate());
+            assertEquals(bean.getPosterPath(), view.getPosterPath());
+            assertEquals(bean.getBackdropPath(), view.getBackdropPath());
+            assertEquals(bean.getPopularity(), view.getPopularity());
+            assertEquals(bean.getVoteAverage(), view.getVoteAverage());
+            assertEquals(bean.getVoteCount(), view.getVoteCount());
+            assertEquals(bean.getAdult(), view.getAdult());
+            assertEquals(bean.getVideo(), view.getVideo());
+            assertEquals(bean.getGenreIds(), view.getGenreIds());
+        }
+    }
+
+    @Test
+    public void nullValuesStayNull() {
+        MovieListingMovieDetails bean = new MovieListingMovieDetails();
+        bean.setId(1L);
+        bean.setVoteAverage(null);
+
+        ReadableMovieListingMovieDetails view =
+                new MovieListingMovieDetailsColumns(Arrays.asList(bean)).getRow(0);
+
+        assertNull(view.getTitle());
+        assertNull(view.getPopularity());
+        assertNull(view.getVoteAverage());
+        assertNull(view.getVoteCount());
+        assertNull(view.getAdult());
+        assertNull(view.getVideo());
+        assertNull(view.getGenreIds());
+    }
+
+    @Test
+    public void languagesArePooled() {
+        MovieListingMovieDetails first = new MovieListingMovieDetails();
+        first.setId(1L);
+        first.setOriginalLanguage(new String("en"));
+
+        MovieListingMovieDetails second = new MovieListingMovieDetails();
+        second.setId(2L);
+        second.setOriginalLanguage(new String("en"));
+
+        MovieListingMovieDetailsColumns firstColumns =
+                new MovieListingMovieDetailsColumns(Arrays.asList(first));
+        MovieListingMovieDetailsColumns secondColumns =
+                new MovieListingMovieDetailsColumns(Arrays.asList(second));
+
+        assertSame(firstColumns.getRow(0).getOriginalLanguage(),
+                secondColumns.getRow(0).getOriginalLanguage());
+    }
+
+    @Test
+    public void lazyRowsAreDecodedOnce() throws Exception {
+        byte[] remainingFields = "{\"overview\":\"Overview\",\"vote_average\":5.5}"
+                .getBytes("UTF-8");
+        MovieListingMovieDetails lazy =
+                new LazyMovieListingMovieDetails(1L, "Title", "/poster.jpg", remainingFields);
+        MovieListingMovieDetailsColumns columns =
+                new MovieListingMovieDetailsColumns(Arrays.asList(lazy));
+
+        ReadableMovieListingMovieDetails view = columns.getRow(0);
+        assertEquals("Title", view.getTitle());
+        assertEquals("Overview", view.getOverview());
+        assertEquals(Double.valueOf(5.5), view.getVoteAverage());
+
+        // After the first access, the columns return the decoded row.
+        ReadableMovieListingMovieDetails decoded = columns.getRow(0);
+        assertSame(decoded, columns.getRow(0));
+        assertEquals((Long) 1L, decoded.getId());
+        assertEquals("Title", decoded.getTitle());
+        assertEquals("Overview", decoded.getOverview());
+    }
+
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.data;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import biz.smk.popularmovies.Benchmarks;
+import biz.smk.popularmovies.tmdbapi.responseobjects.MovieListingMovieDetails;
+import biz.smk.popularmovies.tmdbapi.responseobjects.ReadableMovieListingMovieDetails;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Contention benchmark for MovieListingMovieDetailsStore: writer threads add pages of movie
+ * details (like io threads receiving listing pages) while reader threads look up details (like
+ * binding view holders). The store is compared against a HashMap guarded by one monitor. Only
+ * runs with -Dbenchmark=true (see Benchmarks).
+ */
+public class MovieListingMovieDetailsStoreBenchmark {
+
+    private static final int WRITER_COUNT = 2;
+    private static final int READER_COUNT = 4;
+    private static final int MOVIE_COUNT = 800;
+    private static final int PAGE_SIZE = 20;
+    private static final int READS_PER_READER = 500000;
+    private static final int ITERATIONS = 3;
+
+    private static final MovieListingMovieDetails[] DETAILS = createDetails();
+
+    @Before
+    public void setUp() {
+        Benchmarks.assumeEnabled();
+    }
+
+    @Test
+    public void storeIsFasterThanSynchronizedHashMapUnderContention() throws Exception {
+        long synchronizedTime = Long.MAX_VALUE;
+        long storeTime = Long.MAX_VALUE;
+
+        // Keep the best of a few runs (the first ones warm up the JIT).
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            synchronizedTime = Math.min(synchronizedTime, run(new SynchronizedStore()));
+            storeTime = Math.min(storeTime, run(new DetailsStore()));
+        }
+
+        int operations = READER_COUNT * READS_PER_READER + MOVIE_COUNT;
+        assertTrue("Contention (" + WRITER_COUNT + " writers, " + READER_COUNT + " readers, " +
+                        operations + " operations): synchronized HashMap " +
+                        synchronizedTime / 1000000 + " ms, store " + storeTime / 1000000 + " ms",
+                storeTime <= synchronizedTime);
+    }
+
+    /**
+     * Runs the writers and readers concurrently and returns the elapsed time in ns.
+     */
+    private static long run(final Store store) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(WRITER_COUNT + READER_COUNT);
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<>();
+
+        for (int i = 0; i < WRITER_COUNT; i++) {
+            final int writerNr = i;
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    startSignal.await();
+                    // Each writer adds every WRITER_COUNT-th page.
+                    for (int page = writerNr; page * PAGE_SIZE < MOVIE_COUNT;
+                         page += WRITER_COUNT) {
+                        store.addPage(Arrays.asList(DETAILS)
+                                .subList(page * PAGE_SIZE, (page + 1) * PAGE_SIZE));
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        for (int i = 0; i < READER_COUNT; i++) {
+            final int readerNr = i;
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    startSignal.await();
+                    int index = readerNr;
+                    for (int i = 0; i < READS_PER_READER; i++) {
+                        index = (index + 7919) % MOVIE_COUNT;
+                        store.get(index);
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        long startTime = System.nanoTime();
+        startSignal.countDown();
+
+        try {
+            for (Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long elapsedTime = System.nanoTime() - startTime;
+
+        for (int i = 0; i < MOVIE_COUNT; i++) {
+            assertEquals(DETAILS[i].getId(), store.get(i).getId());
+        }
+
+        return elapsedTime;
+    }
+
+    private static MovieListingMovieDetails[] createDetails() {
+        MovieListingMovieDetails[] details = new MovieListingMovieDetails[MOVIE_COUNT];
+        for (int i = 0; i < MOVIE_COUNT; i++) {
+            details[i] = new MovieListingMovieDetails();
+            details[i].setId((long) i);
+            details[i].setTitle("Title " + i);
+            details[i].setPosterPath("/poster" + i + ".jpg");
+        }
+        return details;
+    }
+
+    private interface Store {
+        void addPage(List<MovieListingMovieDetails> page);
+        ReadableMovieListingMovieDetails get(long movieId);
+    }
+
+    private static class SynchronizedStore implements Store {
+
+        private final Map<Long, MovieListingMovieDetails> mMap = new HashMap<>();
+
+        @Override
+        public synchronized void addPage(List<MovieListingMovieDetails> page) {
+            for (MovieListingMovieDetails details : page) {
+                mMap.put(details.getId(), details);
+            }
+        }
+
+        @Override
+        public synchronized ReadableMovieListingMovieDetails get(long movieId) {
+            return mMap.get(movieId);
+        }
+
+    }
+
+    private static class DetailsStore implements Store {
+
+        @Override
+        public void addPage(List<MovieListingMovieDetails> page) {
+            MovieListingMovieDetailsStore.addMovieDetails(page);
+        }
+
+        @Override
+        public ReadableMovieListingMovieDetails get(long movieId) {
+            return MovieListingMovieDetailsStore.peekMovieDetails(movieId);
+        }
+
+    }
+
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.data;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import biz.smk.popularmovies.tmdbapi.responseobjects.MovieListingMovieDetails;
+import biz.smk.popularmovies.tmdbapi.responseobjects.ReadableMovieListingMovieDetails;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Tests MovieListingMovieDetailsStore under concurrent access: writer threads add pages of movie
+ * details (like io threads receiving listing pages) while reader threads look up details (like
+ * binding view holders).
+ */
+public class MovieListingMovieDetailsStoreTest {
+
+    private static final int WRITER_COUNT = 2;
+    private static final int READER_COUNT = 4;
+    private static final int MOVIE_COUNT = 800;
+    private static final int PAGE_SIZE = 20;
+    private static final int READS_PER_READER = 100000;
+
+    @Test
+    public void concurrentReadersSeeCompleteDetails() throws Exception {
+        final MovieListingMovieDetails[] details = createDetails();
+
+        ExecutorService executor = Executors.newFixedThreadPool(WRITER_COUNT + READER_COUNT);
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<>();
+
+        for (int i = 0; i < WRITER_COUNT; i++) {
+            final int writerNr = i;
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    startSignal.await();
+                    // Each writer adds every WRITER_COUNT-th page.
+                    for (int page = writerNr; page * PAGE_SIZE < MOVIE_COUNT;
+                         page += WRITER_COUNT) {
+                        MovieListingMovieDetailsStore.addMovieDetails(Arrays.asList(details)
+                                .subList(page * PAGE_SIZE, (page + 1) * PAGE_SIZE));
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        for (int i = 0; i < READER_COUNT; i++) {
+            final int readerNr = i;
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    startSignal.await();
+                    int index = readerNr;
+                    for (int i = 0; i < READS_PER_READER; i++) {
+                        index = (index + 7919) % MOVIE_COUNT;
+                        ReadableMovieListingMovieDetails movieDetails =
+                                MovieListingMovieDetailsStore.peekMovieDetails(index);
+                        // A published entry must be complete.
+                        if (movieDetails != null) {
+                            assertEquals("Title " + index, movieDetails.getTitle());
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        startSignal.countDown();
+
+        try {
+            for (Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (int i = 0; i < MOVIE_COUNT; i++) {
+            ReadableMovieListingMovieDetails movieDetails =
+                    MovieListingMovieDetailsStore.peekMovieDetails(i);
+            assertNotNull(movieDetails);
+            assertEquals(details[i].getId(), movieDetails.getId());
+            assertEquals(details[i].getPosterPath(),
+                    MovieListingMovieDetailsStore.peekPosterPath(i));
+        }
+    }
+
+    private static MovieListingMovieDetails[] createDetails() {
+        MovieListingMovieDetails[] details = new MovieListingMovieDetails[MOVIE_COUNT];
+        for (int i = 0; i < MOVIE_COUNT; i++) {
+            details[i] = new MovieListingMovieDetails();
+            details[i].setId((long) i);
+            details[i].setTitle("Title " + i);
+            details[i].setPosterPath("/poster" + i + ".jpg");
+        }
+        return details;
+    }
+
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.tmdbapi;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Type;
+import java.util.List;
+
+import biz.smk.popularmovies.Benchmarks;
+import biz.smk.popularmovies.tmdbapi.responseobjects.MovieListingMovieDetails;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Benchmarks parsing the movies of a listing page with the streaming TypeAdapters of TmdbGson
+ * against Gson's reflective adapters. Only runs with -Dbenchmark=true (see Benchmarks).
+ *
+ * The movies are parsed completely (as the favorite movies database and the details screen read
+ * them). Listing pages themselves are read lazily (see LazyMovieListingMovieDetails), which costs
+ * parse time for keeping less memory, so they would not compare like for like.
+ */
+public class TmdbGsonBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 500;
+    private static final int MEASURED_ITERATIONS = 2000;
+
+    private static final Type MOVIE_LIST_TYPE =
+            new TypeToken<List<MovieListingMovieDetails>>() {}.getType();
+
+    private String mJson;
+
+    @Before
+    public void setUp() {
+        Benchmarks.assumeEnabled();
+
+        mJson = TmdbGsonTest.createMovieListJson(20);
+    }
+
+    @Test
+    public void streamingParsingIsFasterThanReflective() {
+        long reflectiveTime = measureTime(new Gson());
+        long streamingTime = measureTime(TmdbGson.get());
+
+        assertTrue("Movie list parse time: reflective " + reflectiveTime / 1000 + " us, " +
+                "streaming " + streamingTime / 1000 + " us", streamingTime < reflectiveTime);
+    }
+
+    @Test
+    public void streamingParsingAllocatesNoMoreThanReflective() {
+        Benchmarks.assumeAllocationsMeasurable();
+
+        long reflectiveBytes = measureAllocations(new Gson());
+        long streamingBytes = measureAllocations(TmdbGson.get());
+
+        // On the JVM both allocate about the same (the strings and boxed values of the results);
+        // allow 1 % for measurement noise.
+        assertTrue("Movie list parse allocations: reflective " + reflectiveBytes + " bytes, " +
+                        "streaming " + streamingBytes + " bytes",
+                streamingBytes <= reflectiveBytes + reflectiveBytes / 100);
+    }
+
+    /**
+     * Returns the average time of parsing the movie list in ns.
+     */
+    private long measureTime(Gson gson) {
+        warmUp(gson);
+
+        long startTime = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            gson.fromJson(mJson, MOVIE_LIST_TYPE);
+        }
+        return (System.nanoTime() - startTime) / MEASURED_ITERATIONS;
+    }
+
+    /**
+     * Returns the average number of bytes allocated for parsing the movie list.
+     */
+    private long measureAllocations(Gson gson) {
+        warmUp(gson);
+
+        long allocatedBefore = Benchmarks.getAllocatedBytes();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            gson.fromJson(mJson, MOVIE_LIST_TYPE);
+        }
+        return (Benchmarks.getAllocatedBytes() - allocatedBefore) / MEASURED_ITERATIONS;
+    }
+
+    private void warmUp(Gson gson) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            gson.fromJson(mJson, MOVIE_LIST_TYPE);
+        }
+    }
+
+}
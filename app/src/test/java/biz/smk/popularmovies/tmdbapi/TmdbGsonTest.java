@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.tmdbapi;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import biz.smk.popularmovies.tmdbapi.responseobjects.LazyMovieListingMovieDetails;
+import biz.smk.popularmovies.tmdbapi.responseobjects.MovieListingMovieDetails;
+import biz.smk.popularmovies.tmdbapi.responseobjects.MovieListingPage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the streaming TypeAdapters of TmdbGson read and write movie listings like Gson's
+ * reflective adapters.
+ */
+public class TmdbGsonTest {
+
+    @Test
+    public void parsesListingPageLikeReflectiveGson() throws Exception {
+        String json = createListingPageJson(20);
+
+        assertSamePage(new Gson().fromJson(json, MovieListingPage.class),
+                TmdbGson.get().fromJson(json, MovieListingPage.class));
+    }
+
+    @Test
+    public void roundTripMovieDetails() throws Exception {
+        String json = createMovieJson(550);
+        Gson gson = TmdbGson.get();
+
+        MovieListingMovieDetails details = gson.fromJson(json, MovieListingMovieDetails.class);
+        String serialized = gson.toJson(details, MovieListingMovieDetails.class);
+
+        assertSameDetails(new Gson().fromJson(serialized, MovieListingMovieDetails.class),
+                gson.fromJson(serialized, MovieListingMovieDetails.class));
+        assertSameDetails(details, gson.fromJson(serialized, MovieListingMovieDetails.class));
+    }
+
+    @Test
+    public void roundTripLazyListingPage() throws Exception {
+        String json = createListingPageJson(20);
+        Gson gson = TmdbGson.get();
+
+        MovieListingPage page = gson.fromJson(json, MovieListingPage.class);
+        for (MovieListingMovieDetails details : page.getResults()) {
+            assertTrue(details instanceof LazyMovieListingMovieDetails);
+        }
+
+        // Writing lazy movie details copies the remaining fields without decoding them.
+        String serialized = gson.toJson(page, MovieListingPage.class);
+
+        assertSamePage(new Gson().fromJson(json, MovieListingPage.class),
+                new Gson().fromJson(serialized, MovieListingPage.class));
+        assertSamePage(new Gson().fromJson(json, MovieListingPage.class),
+                gson.fromJson(serialized, MovieListingPage.class));
+    }
+
+    private static String createListingPageJson(int movieCount) {
+        return "{\"page\":1,\"results\":" + createMovieListJson(movieCount) +
+                ",\"total_results\":19617,\"total_pages\":981}";
+    }
+
+    static String createMovieListJson(int movieCount) {
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        for (int i = 0; i < movieCount; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(createMovieJson(1000 + i));
+        }
+        sb.append(']');
+        return sb.toString();
+    }
+
+    private static String createMovieJson(long id) {
+        return "{\"poster_path\":\"/poster" + id + ".jpg\",\"adult\":false," +
+                "\"overview\":\"An overview of movie " + id + " that is a bit longer, just like " +
+                "the overviews returned by the API usually are. It describes the plot of the " +
+                "movie in a few sentences.\",\"release_date\":\"2016-08-03\"," +
+                "\"genre_ids\":[14,28,80],\"id\":" + id + "," +
+                "\"original_title\":\"Original title " + id + "\"," +
+                "\"original_language\":\"en\",\"title\":\"Title " + id + "\"," +
+                "\"backdrop_path\":\"/backdrop" + id + ".jpg\",\"popularity\":48.261451," +
+                "\"vote_count\":1466,\"video\":false,\"vote_average\":5.9}";
+    }
+
+    private static void assertSamePage(MovieListingPage expected, MovieListingPage actual) {
+        assertEquals(expected.getPage(), actual.getPage());
+        assertEquals(expected.getTotalResults(), actual.getTotalResults());
+        assertEquals(expected.getTotalPages(), actual.getTotalPages());
+        assertEquals(expected.getResults().size(), actual.getResults().size());
+
+        for (int i = 0; i < expected.getResults().size(); i++) {
+            assertSameDetails(expected.getResults().get(i), actual.getResults().get(i));
+        }
+    }
+
+    private static void assertSameDetails(MovieListingMovieDetails expected,
+                                          MovieListingMovieDetails actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getPosterPath(), actual.getPosterPath());
+        assertEquals(expected.getAdult(), actual.getAdult());
+        assertEquals(expected.getOverview(), actual.getOverview());
+        assertEquals(expected.getReleaseDate(), actual.getReleaseDate());
+        assertEquals(expected.getGenreIds(), actual.getGenreIds());
+        assertEquals(expected.getOriginalTitle(), actual.getOriginalTitle());
+        assertEquals(expected.getOriginalLanguage(), actual.getOriginalLanguage());
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getBackdropPath(), actual.getBackdropPath());
+        assertEquals(expected.getPopularity(), actual.getPopularity());
+        assertEquals(expected.getVoteCount(), actual.getVoteCount());
+        assertEquals(expected.getVideo(), actual.getVideo());
+        assertEquals(expected.getVoteAverage(), actual.getVoteAverage());
+    }
+
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.utilities;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Multi-threaded stress test for ConcurrentLruCache. Many threads race for the same keys the way
+ * io threads and the main thread race for listing pages in MovieListing.
+ */
+public class ConcurrentLruCacheStressTest {
+
+    private static final int THREAD_COUNT = 8;
+    private static final int ROUNDS = 2000;
+    private static final int MAX_SIZE = 25;
+
+    @Test
+    public void putIfAbsentHasExactlyOneWinnerPerKey() throws Exception {
+        final ConcurrentLruCache<Integer, Object> cache = new ConcurrentLruCache<>(ROUNDS);
+        final AtomicInteger[] winners = new AtomicInteger[ROUNDS];
+        final Object[][] seenValues = new Object[ROUNDS][THREAD_COUNT];
+        for (int i = 0; i < ROUNDS; i++) winners[i] = new AtomicInteger();
+
+        runConcurrently(new Worker() {
+            @Override
+            public void run(int threadNr) {
+                for (int key = 0; key < ROUNDS; key++) {
+                    Object value = new Object();
+                    Object existing = cache.putIfAbsent(key, value);
+                    if (existing == null) {
+                        winners[key].incrementAndGet();
+                        seenValues[key][threadNr] = value;
+                    } else {
+                        seenValues[key][threadNr] = existing;
+                    }
+                }
+            }
+        });
+
+        for (int key = 0; key < ROUNDS; key++) {
+            assertEquals("winners for key " + key, 1, winners[key].get());
+            for (int threadNr = 1; threadNr < THREAD_COUNT; threadNr++) {
+                assertSame(seenValues[key][0], seenValues[key][threadNr]);
+            }
+        }
+    }
+
+    @Test
+    public void sizeStaysBoundedUnderConcurrentWrites() throws Exception {
+        final ConcurrentLruCache<Integer, Integer> cache = new ConcurrentLruCache<>(MAX_SIZE);
+
+        runConcurrently(new Worker() {
+            @Override
+            public void run(int threadNr) {
+                for (int i = 0; i < ROUNDS; i++) {
+                    int key = (i * 31 + threadNr * 7) % (MAX_SIZE * 4);
+                    switch (i % 4) {
+                        case 0:
+                            cache.put(key, i);
+                            break;
+                        case 1:
+                            cache.putIfAbsent(key, i);
+                            break;
+                        case 2:
+                            Integer value = cache.get(key);
+                            if (value != null) cache.remove(key, value);
+                            break;
+                        default:
+                            cache.get(key);
+                    }
+
+                    // Concurrent writers may overshoot by one entry per writer before trimming.
+                    assertTrue(cache.size() <= MAX_SIZE + THREAD_COUNT);
+                }
+            }
+        });
+
+        assertTrue("size " + cache.size(), cache.size() <= MAX_SIZE);
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvicted() {
+        ConcurrentLruCache<Integer, Integer> cache = new ConcurrentLruCache<>(3);
+        cache.put(1, 1);
+        cache.put(2, 2);
+        cache.put(3, 3);
+        cache.get(1);
+        cache.put(4, 4);
+
+        assertEquals(Integer.valueOf(1), cache.get(1));
+        assertEquals(null, cache.get(2));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    private interface Worker {
+        void run(int threadNr);
+    }
+
+    /**
+     * Runs the worker on THREAD_COUNT threads that start at the same time and rethrows the first
+     * failure.
+     */
+    private static void runConcurrently(final Worker worker) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<>();
+
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            final int threadNr = i;
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    startSignal.await();
+                    worker.run(threadNr);
+                    return null;
+                }
+            }));
+        }
+
+        startSignal.countDown();
+
+        try {
+            for (Future<Void> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
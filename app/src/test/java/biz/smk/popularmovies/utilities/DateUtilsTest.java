@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.utilities;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for DateUtils: epoch days and Dates must match what SimpleDateFormat("yyyy-MM-dd")
+ * returned for valid dates, and invalid strings must be rejected.
+ */
+public class DateUtilsTest {
+
+    @Test
+    public void matchesSimpleDateFormat() throws Exception {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        SimpleDateFormat utcFormat = new SimpleDateFormat("yyyy-MM-dd");
+        utcFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        Calendar calendar = new GregorianCalendar(1890, Calendar.JANUARY, 1);
+        Calendar end = new GregorianCalendar(2030, Calendar.DECEMBER, 31);
+
+        while (!calendar.after(end)) {
+            String date = format.format(calendar.getTime());
+            int epochDay = DateUtils.parseEpochDay(date);
+
+            assertEquals(date, utcFormat.parse(date).getTime() / (24 * 60 * 60 * 1000), epochDay);
+            assertEquals(date, format.parse(date), DateUtils.toDate(epochDay));
+
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+        }
+    }
+
+    @Test
+    public void rejectsInvalidDates() {
+        String[] invalidDates = { null, "", "2016", "2016-1-01", "2016-13-01", "2016-00-10",
+                "2016-02-30", "2015-02-29", "2016-04-31", "2016-12-0x", "2016/12/24" };
+
+        for (String date : invalidDates) {
+            assertEquals(DateUtils.NO_DATE, DateUtils.parseEpochDay(date));
+        }
+
+        assertEquals(DateUtils.parseEpochDay("2016-02-29"),
+                DateUtils.parseEpochDay("2016-03-01") - 1);
+        assertNull(DateUtils.toDate(DateUtils.NO_DATE));
+    }
+
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2017 Stefan Kleeschulte
+ */
+
+package biz.smk.popularmovies.utilities;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for PosterWidthIndex: width lookups, the size bound, persisting and pruning against the
+ * URLs of the image cache.
+ */
+public class PosterWidthIndexTest {
+
+    private static final String BASE_URI = "https://image.tmdb.org/t/p/w";
+
+    @Test
+    public void findsSmallestAdequateWidth() {
+        PosterWidthIndex index = new PosterWidthIndex(100, null);
+        index.add("/a.jpg", 342, BASE_URI + "342/a.jpg");
+        index.add("/a.jpg", 92, BASE_URI + "92/a.jpg");
+        index.add("/a.jpg", 185, BASE_URI + "185/a.jpg");
+
+        assertEquals(92, index.find("/a.jpg", 50).width);
+        assertEquals(185, index.find("/a.jpg", 93).width);
+        assertEquals(BASE_URI + "342/a.jpg", index.find("/a.jpg", 342).uri);
+        assertNull(index.find("/a.jpg", 343));
+        assertNull(index.find("/b.jpg", 1));
+    }
+
+    @Test
+    public void isBounded() {
+        PosterWidthIndex index = new PosterWidthIndex(160, null);
+        for (int i = 0; i < 10000; i++) {
+            index.add("/poster" + i + ".jpg", 185, BASE_URI + "185/poster" + i + ".jpg");
+        }
+
+        assertTrue(index.size() <= 160);
+        // The most recently added posters are still in the index.
+        assertEquals(185, index.find("/poster9999.jpg", 185).width);
+    }
+
+    @Test
+    public void survivesWriteAndRead() throws Exception {
+        PosterWidthIndex index = new PosterWidthIndex(100, null);
+        for (int i = 0; i < 50; i++) {
+            index.add("/poster" + i + ".jpg", 92, BASE_URI + "92/poster" + i + ".jpg");
+            index.add("/poster" + i + ".jpg", 500, BASE_URI + "500/poster" + i + ".jpg");
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.writeTo(out);
+
+        PosterWidthIndex readIndex = new PosterWidthIndex(100, null);
+        readIndex.readFrom(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(index.size(), readIndex.size());
+        for (int i = 0; i < 50; i++) {
+            PosterWidthIndex.CachedPoster[] cachedPosters =
+                    readIndex.getCachedPosters("/poster" + i + ".jpg");
+            assertEquals(2, cachedPosters.length);
+            assertEquals(92, cachedPosters[0].width);
+            assertEquals(BASE_URI + "500/poster" + i + ".jpg", cachedPosters[1].uri);
+        }
+    }
+
+    @Test
+    public void dropsEvictedImages() {
+        PosterWidthIndex index = new PosterWidthIndex(100, null);
+        index.add("/a.jpg", 92, BASE_URI + "92/a.jpg");
+        index.add("/a.jpg", 185, BASE_URI + "185/a.jpg");
+        index.add("/b.jpg", 92, BASE_URI + "92/b.jpg");
+
+        Set<String> cachedUris = new HashSet<>(Arrays.asList(BASE_URI + "185/a.jpg"));
+        index.retainAll(cachedUris);
+
+        assertEquals(1, index.size());
+        assertEquals(185, index.find("/a.jpg", 1).width);
+        assertNull(index.find("/b.jpg", 1));
+    }
+
+}